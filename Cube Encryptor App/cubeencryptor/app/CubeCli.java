@@ -0,0 +1,473 @@
+package cubeencryptor.app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import cubeencryptor.CubeAlphabet;
+import cubeencryptor.CubeCodec;
+import cubeencryptor.CubeFileCipher;
+import cubeencryptor.CubeMetrics;
+import cubeencryptor.CubeStreams;
+import cubeencryptor.KeySchedule;
+
+/**
+ * Command-line batch mode. Encrypts or decrypts files, directories, glob matches or stdin without touching
+ * AWT or Swing, so it runs on headless machines and starts quickly.
+ *
+ * <pre>
+ * CubeCli encrypt|decrypt (--key KEY | --key-file FILE) [--alphabet RANGES] [--out DIR] [--parallel N]
+ *                         [--charset NAME] [INPUT...]
+ * CubeCli serve [--port N] [--alphabet RANGES] [--metrics]
+ * </pre>
+ *
+ * An INPUT is a file, a directory (every file below it), a glob such as {@code logs/**.log}, or "-" for stdin.
+ * With no inputs stdin is read. Results go to stdout, one line break between inputs, unless {@code --out} names
+ * a directory, in which case every input is written there under its path relative to the directory or glob it
+ * came from. An input whose output would be an input, its own or another one, or the same file as another input's
+ * output, fails before anything is written.
+ * {@code --alphabet} takes code point ranges as accepted by {@link CubeAlphabet#parse(String)}.
+ * Files encrypted into {@code --out} in UTF-8 go through {@link CubeFileCipher} without being read into memory.
+ * {@code serve} runs a {@link CubeServer} on localhost (port 7300 by default) until the process is killed;
+ * {@code --metrics} switches on {@link CubeMetrics} so that its STATS command reports throughput and latency.
+ */
+public final class CubeCli {
+    private static final String USAGE = "Usage: CubeCli encrypt|decrypt (--key KEY | --key-file FILE)"
+            + " [--alphabet RANGES] [--out DIR] [--parallel N] [--charset NAME] [INPUT...]"
+            + "\n       CubeCli serve [--port N] [--alphabet RANGES] [--metrics]";
+    private static final int DEFAULT_PORT = 7300;
+
+    private final boolean encrypt;
+    private final CubeCodec codec;
+    private final Path outputDir;
+    private final int parallelism;
+    private final Charset charset;
+    // Threads per mapped file; all of them when there is only one file, otherwise the files run in parallel
+    private int windowParallelism = 1;
+
+    private CubeCli(boolean encrypt, CubeCodec codec, Path outputDir, int parallelism, Charset charset) {
+        this.encrypt = encrypt;
+        this.codec = codec;
+        this.outputDir = outputDir;
+        this.parallelism = parallelism;
+        this.charset = charset;
+    }
+
+    public static void main(String[] args) {
+        try {
+            System.exit(run(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println("cube: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Runs the command and returns the process exit code: 0 on success, 1 if any input failed.
+     */
+    public static int run(String[] args) {
+        if (args.length > 0 && args[0].equals("serve")) {
+            return serve(args);
+        }
+        if (args.length == 0 || !(args[0].equals("encrypt") || args[0].equals("decrypt"))) {
+            throw new IllegalArgumentException("expected encrypt, decrypt or serve");
+        }
+        String key = null;
+        CubeAlphabet alphabet = CubeAlphabet.PRINTABLE_ASCII;
+        Path outputDir = null;
+        int parallelism = 1;
+        Charset charset = StandardCharsets.UTF_8;
+        List<String> inputs = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--key":
+                    key = value(args, ++i, arg);
+                    break;
+                case "--key-file":
+                    key = readKeyFile(Paths.get(value(args, ++i, arg)));
+                    break;
+                case "--alphabet":
+                    alphabet = CubeAlphabet.parse(value(args, ++i, arg));
+                    break;
+                case "--out":
+                    outputDir = Paths.get(value(args, ++i, arg));
+                    break;
+                case "--parallel":
+                    parallelism = Integer.parseInt(value(args, ++i, arg));
+                    if (parallelism < 1) {
+                        throw new IllegalArgumentException("--parallel must be at least 1");
+                    }
+                    break;
+                case "--charset":
+                    charset = Charset.forName(value(args, ++i, arg));
+                    break;
+                default:
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("unknown option " + arg);
+                    }
+                    inputs.add(arg);
+            }
+        }
+        if (key == null) {
+            throw new IllegalArgumentException("a key is required");
+        }
+        if (inputs.isEmpty()) {
+            inputs.add("-");
+        }
+        CubeCli cli = new CubeCli(args[0].equals("encrypt"), KeySchedule.derive(key, alphabet).getCodec(), outputDir,
+                parallelism, charset);
+        return cli.process(inputs);
+    }
+
+    /**
+     * Runs the encryption service in the foreground.
+     */
+    private static int serve(String[] args) {
+        int port = DEFAULT_PORT;
+        CubeAlphabet alphabet = CubeAlphabet.PRINTABLE_ASCII;
+        boolean metrics = false;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--port":
+                    port = Integer.parseInt(value(args, ++i, arg));
+                    break;
+                case "--alphabet":
+                    alphabet = CubeAlphabet.parse(value(args, ++i, arg));
+                    break;
+                case "--metrics":
+                    metrics = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + arg);
+            }
+        }
+        if (metrics) {
+            CubeMetrics.setEnabled(true);
+        }
+        CubeServer server = new CubeServer(port, alphabet);
+        try {
+            server.start();
+            System.err.println("cube: listening on localhost:" + server.getPort());
+            server.awaitTermination();
+            return 0;
+        } catch (IOException e) {
+            System.err.println("cube: cannot listen on port " + port + ": " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    private int process(List<String> inputs) {
+        List<Job> jobs = new ArrayList<>();
+        int failures = 0;
+        for (String input : inputs) {
+            try {
+                expand(input, jobs);
+            } catch (IOException e) {
+                System.err.println("cube: " + input + ": " + e.getMessage());
+                failures++;
+            }
+        }
+        if (outputDir == null && jobs.size() > 1 && parallelism > 1) {
+            throw new IllegalArgumentException("--parallel with several inputs needs --out");
+        }
+        if (outputDir != null) {
+            failures += dropClashingTargets(jobs);
+        }
+        if (parallelism == 1 || jobs.size() <= 1) {
+            windowParallelism = parallelism;
+            for (int i = 0; i < jobs.size(); i++) {
+                if (outputDir == null && i > 0) {
+                    // Keep the results apart, or the last coordinate of one runs into the first of the next
+                    System.out.writeBytes(System.lineSeparator().getBytes(charset));
+                }
+                failures += runJob(jobs.get(i));
+            }
+            return failures == 0 ? 0 : 1;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, jobs.size()));
+        List<Future<Integer>> results = new ArrayList<>();
+        for (Job job : jobs) {
+            results.add(pool.submit(() -> runJob(job)));
+        }
+        pool.shutdown();
+        // Every job runs to the end even if another one fails, and main only exits once all files are complete
+        boolean interrupted = false;
+        for (int i = 0; i < results.size(); ) {
+            try {
+                failures += results.get(i).get();
+                i++;
+            } catch (ExecutionException e) {
+                System.err.println("cube: " + describe(jobs.get(i)) + ": " + e.getCause());
+                failures++;
+                i++;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        while (true) {
+            try {
+                if (pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return failures == 0 ? 0 : 1;
+    }
+
+    /**
+     * Turns one command-line input into jobs: stdin, a single file, every file under a directory or every
+     * file matching a glob.
+     */
+    private void expand(String input, List<Job> jobs) throws IOException {
+        if (input.equals("-")) {
+            for (Job job : jobs) {
+                if (job.source == null) {
+                    throw new IllegalArgumentException("stdin (-) can only be given once");
+                }
+            }
+            jobs.add(new Job(null, Paths.get("stdin")));
+            return;
+        }
+        int globStart = indexOfGlob(input);
+        if (globStart < 0) {
+            Path path = Paths.get(input);
+            if (Files.isDirectory(path)) {
+                addFiles(path, null, jobs);
+            } else {
+                jobs.add(new Job(path, path.getFileName()));
+            }
+            return;
+        }
+        // Walk from the deepest directory before the first wildcard and match the rest of the pattern.
+        // On Windows either separator may end that directory.
+        String prefix = input.substring(0, globStart);
+        int separator = Math.max(prefix.lastIndexOf('/'), prefix.lastIndexOf(File.separatorChar));
+        Path base = separator < 0 ? Paths.get(".") : Paths.get(prefix.substring(0, separator + 1));
+        String pattern = input.substring(separator + 1);
+        if (File.separatorChar == '\\') {
+            // Backslash escapes in glob syntax, while '/' matches the platform separator
+            pattern = pattern.replace('\\', '/');
+        }
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        addFiles(base, matcher, jobs);
+    }
+
+    private static void addFiles(Path base, PathMatcher matcher, List<Job> jobs) throws IOException {
+        try (Stream<Path> paths = Files.walk(base)) {
+            paths.filter(Files::isRegularFile).sorted().forEach(path -> {
+                Path relative = base.relativize(path);
+                if (matcher == null || matcher.matches(relative)) {
+                    jobs.add(new Job(path, relative));
+                }
+            });
+        }
+    }
+
+    /**
+     * Removes the jobs whose target is an input, their own or another job's, which opening the output would
+     * truncate before it is read, and the jobs that share a target with another job. Runs before any output is
+     * opened and returns the number of jobs removed.
+     */
+    private int dropClashingTargets(List<Job> jobs) {
+        Map<Object, Job> sources = new HashMap<>();
+        for (Job job : jobs) {
+            if (job.source != null) {
+                for (Object identity : identities(job.source)) {
+                    sources.putIfAbsent(identity, job);
+                }
+            }
+        }
+        Map<Path, List<Job>> byTarget = new LinkedHashMap<>();
+        for (Job job : jobs) {
+            byTarget.computeIfAbsent(target(job).toAbsolutePath().normalize(), t -> new ArrayList<>()).add(job);
+        }
+        List<Job> clashing = new ArrayList<>();
+        for (Map.Entry<Path, List<Job>> entry : byTarget.entrySet()) {
+            List<Job> sharing = entry.getValue();
+            if (sharing.size() > 1) {
+                for (Job job : sharing) {
+                    System.err.println("cube: " + describe(job) + ": output " + entry.getKey()
+                            + " would also be written from " + (sharing.size() - 1) + " other input(s)");
+                }
+                clashing.addAll(sharing);
+                continue;
+            }
+            Job job = sharing.get(0);
+            for (Object identity : identities(entry.getKey())) {
+                Job reader = sources.get(identity);
+                if (reader != null) {
+                    System.err.println("cube: " + describe(job) + ": output " + entry.getKey() + " is "
+                            + (reader == job ? "the input itself" : "the input " + describe(reader)));
+                    clashing.add(job);
+                    break;
+                }
+            }
+        }
+        jobs.removeAll(clashing);
+        return clashing.size();
+    }
+
+    /**
+     * The ways a path can name an existing file: its normalized absolute path and, if it exists, its real path
+     * and file key. Links, case-insensitive names and the like only show up when asking the file system.
+     */
+    private static List<Object> identities(Path path) {
+        List<Object> identities = new ArrayList<>(3);
+        identities.add(path.toAbsolutePath().normalize());
+        try {
+            if (Files.exists(path)) {
+                identities.add(path.toRealPath());
+                Object fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+                if (fileKey != null) {
+                    identities.add(fileKey);
+                }
+            }
+        } catch (IOException e) {
+            // The path itself is all there is to compare
+        }
+        return identities;
+    }
+
+    private Path target(Job job) {
+        return outputDir.resolve(job.relativeName);
+    }
+
+    private static String describe(Job job) {
+        return job.source == null ? "stdin" : job.source.toString();
+    }
+
+    private int runJob(Job job) {
+        try {
+            if (outputDir == null) {
+                try (InputStream in = open(job)) {
+                    transform(in, System.out);
+                }
+                System.out.flush();
+                return 0;
+            }
+            Path target = target(job);
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            if (encrypt && job.source != null && charset.equals(StandardCharsets.UTF_8)) {
+                // File to file: encode through mapped windows instead of a stream
+                CubeFileCipher.encrypt(codec, job.source, target, windowParallelism, CubeFileCipher.DEFAULT_WINDOW_SIZE);
+                return 0;
+            }
+            // The input is opened first, so a missing input leaves no empty output behind
+            try (InputStream in = open(job);
+                    OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+                transform(in, out);
+            }
+            return 0;
+        } catch (IOException e) {
+            System.err.println("cube: " + describe(job) + ": " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Opens the job's input as a stream; the mapped file path opens the file itself and never calls this.
+     */
+    private static InputStream open(Job job) throws IOException {
+        return job.source == null
+                ? new StdinInputStream()
+                : new BufferedInputStream(Files.newInputStream(job.source));
+    }
+
+    private void transform(InputStream in, OutputStream out) throws IOException {
+        if (encrypt) {
+            CubeStreams.encrypt(codec, in, out, charset);
+        } else {
+            CubeStreams.decrypt(codec, in, out, charset);
+        }
+    }
+
+    private static int indexOfGlob(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            char ch = input.charAt(i);
+            if (ch == '*' || ch == '?' || ch == '[' || ch == '{') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[index];
+    }
+
+    private static String readKeyFile(Path path) {
+        try {
+            String key = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+            // Editors add a final line break that is not part of the key
+            if (key.endsWith("\r\n")) {
+                return key.substring(0, key.length() - 2);
+            }
+            return key.endsWith("\n") ? key.substring(0, key.length() - 1) : key;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("cannot read key file " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * System.in for one job; closing it leaves System.in open.
+     */
+    private static final class StdinInputStream extends FilterInputStream {
+        StdinInputStream() {
+            super(System.in);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class Job {
+        // null for stdin
+        final Path source;
+        final Path relativeName;
+
+        Job(Path source, Path relativeName) {
+            this.source = source;
+            this.relativeName = relativeName;
+        }
+    }
+}
@@ -0,0 +1,518 @@
+package cubeencryptor.app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import cubeencryptor.CubeAlphabet;
+import cubeencryptor.CubeCodec;
+import cubeencryptor.CubeMetrics;
+import cubeencryptor.CubeStreams;
+import cubeencryptor.KeyScheduleCache;
+
+/**
+ * Embedded encryption service: a line-based protocol over TCP, bound to the loopback interface by default.
+ *
+ * Every request is one UTF-8 line ending in "\n" (a "\r" before it is ignored); the response is one line
+ * starting with "OK " or "ERR ".
+ * <pre>
+ * KEY &lt;key&gt;          select the key for this connection        OK &lt;cube count&gt;
+ * ENC &lt;text&gt;         encrypt one line                          OK &lt;ciphertext&gt;
+ * DEC &lt;ciphertext&gt;   decrypt one line                          OK &lt;text&gt;
+ * ENCS &lt;bytes&gt;       encrypt a body of that many UTF-8 bytes   OK chunked, then chunks
+ * DECS &lt;bytes&gt;       decrypt a body of that many UTF-8 bytes   OK chunked, then chunks
+ * STATS              throughput and latency as JSON           OK {...}
+ * QUIT               close the connection                     OK bye
+ * </pre>
+ * A streaming response is a sequence of chunks, each a line with its byte count followed by that many bytes,
+ * and ends with a "0" line. Bodies are processed as they arrive and results are written as they are produced.
+ *
+ * STATS reports {@link CubeMetrics}, which are process-wide and off by default; whoever runs the server decides
+ * whether to switch them on (see {@code CubeCli serve --metrics}). Without them STATS only has connection counts.
+ *
+ * Clients may pipeline: requests are answered in order, and responses are only flushed once no further
+ * request is waiting in the connection's buffer. Each connection runs on its own virtual thread when the
+ * JVM supports them (Java 21+), and on a pooled platform thread otherwise. At most {@code maxConnections} are
+ * served at once, so the line buffers together stay bounded; later clients are accepted as earlier ones leave.
+ */
+public final class CubeServer implements Closeable {
+    /** Longest request line accepted, in bytes; longer texts go through ENCS and DECS. */
+    public static final int MAX_LINE_LENGTH = 1 << 20;
+    /** Connections served at once unless the constructor says otherwise; further clients wait in the backlog. */
+    public static final int DEFAULT_MAX_CONNECTIONS = 256;
+    private static final byte[] CHUNKED = "OK chunked\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final InetSocketAddress address;
+    private final KeyScheduleCache schedules;
+    // One permit per connection that may be served at once
+    private final Semaphore connectionPermits;
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final LongAdder totalConnections = new LongAdder();
+    private ServerSocket serverSocket;
+    private ExecutorService connections;
+    private Thread acceptor;
+    private long startMillis;
+
+    /**
+     * Creates a server on the loopback interface. Port 0 picks a free port.
+     */
+    public CubeServer(int port, CubeAlphabet alphabet) {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), alphabet);
+    }
+
+    public CubeServer(InetSocketAddress address, CubeAlphabet alphabet) {
+        this(address, alphabet, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * @param maxConnections connections served at once; a line buffer of up to {@link #MAX_LINE_LENGTH} bytes
+     *        is held for each of them
+     */
+    public CubeServer(InetSocketAddress address, CubeAlphabet alphabet, int maxConnections) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections must be at least 1: " + maxConnections);
+        }
+        this.address = address;
+        this.schedules = new KeyScheduleCache(256, alphabet);
+        this.connectionPermits = new Semaphore(maxConnections);
+    }
+
+    /**
+     * Binds the socket and starts accepting connections in the background.
+     */
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(address, 1024);
+        connections = newConnectionExecutor();
+        startMillis = System.currentTimeMillis();
+        acceptor = new Thread(this::acceptLoop, "cube-server-acceptor");
+        acceptor.start();
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     */
+    public synchronized int getPort() {
+        checkStarted();
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Blocks until the server is closed.
+     */
+    public void awaitTermination() throws InterruptedException {
+        synchronized (this) {
+            checkStarted();
+        }
+        acceptor.join();
+        connections.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops accepting connections. Requests already running are allowed to finish.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+            // Wakes the acceptor if it is waiting for a connection to end
+            acceptor.interrupt();
+            connections.shutdown();
+        }
+    }
+
+    private void checkStarted() {
+        if (serverSocket == null) {
+            throw new IllegalStateException("Server not started");
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                // At the limit, new clients queue in the backlog until a connection ends
+                connectionPermits.acquire();
+            } catch (InterruptedException e) {
+                // Interrupted by close()
+                break;
+            }
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                // Closed by close()
+                connectionPermits.release();
+                break;
+            }
+            totalConnections.increment();
+            openConnections.incrementAndGet();
+            try {
+                connections.execute(() -> serve(socket));
+            } catch (RejectedExecutionException e) {
+                // Accepted just as close() shut the executor down
+                openConnections.decrementAndGet();
+                connectionPermits.release();
+                closeQuietly(socket);
+                break;
+            }
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing was sent on it
+        }
+    }
+
+    /**
+     * Returns an executor that runs every connection on a new virtual thread, or on a cached pool of daemon
+     * threads if this JVM has no virtual threads.
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "cube-server-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // ------------------------------
+    // Connection Handling
+    // ------------------------------
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            s.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(s.getInputStream(), 1 << 16);
+            OutputStream out = new BufferedOutputStream(s.getOutputStream(), 1 << 16);
+            Connection connection = new Connection(in, out);
+            while (connection.handleRequest()) {
+                // Only flush once the client has no more pipelined requests waiting
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // The client went away or broke the protocol; nothing more can be sent
+        } finally {
+            openConnections.decrementAndGet();
+            connectionPermits.release();
+        }
+    }
+
+    private final class Connection {
+        private final InputStream in;
+        private final OutputStream out;
+        private byte[] line = new byte[256];
+        private CubeCodec codec;
+
+        Connection(InputStream in, OutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        /**
+         * Reads and answers one request. Returns false when the connection should be closed.
+         */
+        boolean handleRequest() throws IOException {
+            int length = readLine();
+            if (length < 0) {
+                return false;
+            }
+            long start = CubeMetrics.start();
+            if (length > MAX_LINE_LENGTH) {
+                respond("ERR request line longer than " + MAX_LINE_LENGTH + " bytes");
+                return true;
+            }
+            String request = new String(line, 0, length, StandardCharsets.UTF_8);
+            int space = request.indexOf(' ');
+            String command = space < 0 ? request : request.substring(0, space);
+            String argument = space < 0 ? "" : request.substring(space + 1);
+            long characters = argument.length();
+            switch (command) {
+                case "KEY":
+                    codec = schedules.get(argument).getCodec();
+                    respond("OK " + codec.getCubeCount());
+                    break;
+                case "ENC":
+                case "DEC":
+                    if (codec == null) {
+                        respond("ERR no key; send KEY first");
+                        break;
+                    }
+                    String result = command.equals("ENC") ? codec.encrypt(argument) : codec.decrypt(argument);
+                    if (result.indexOf('\n') >= 0) {
+                        respond("ERR result contains a line break; use " + command + "S");
+                    } else {
+                        respond("OK " + result);
+                    }
+                    break;
+                case "ENCS":
+                case "DECS":
+                    long bodyLength = parseLength(argument);
+                    if (bodyLength < 0) {
+                        respond("ERR invalid body length: " + argument);
+                        return false;
+                    }
+                    characters = bodyLength;
+                    streamBody(command.equals("ENCS"), bodyLength);
+                    break;
+                case "STATS":
+                    respond("OK " + statsJson());
+                    break;
+                case "QUIT":
+                    respond("OK bye");
+                    return false;
+                default:
+                    respond("ERR unknown command: " + command);
+            }
+            CubeMetrics.record(CubeMetrics.Operation.SERVICE_REQUEST, start, characters);
+            return true;
+        }
+
+        private void streamBody(boolean encrypt, long bodyLength) throws IOException {
+            BodyInputStream body = new BodyInputStream(in, bodyLength);
+            if (codec == null) {
+                body.skipRemaining();
+                respond("ERR no key; send KEY first");
+                return;
+            }
+            out.write(CHUNKED);
+            ChunkedOutputStream chunks = new ChunkedOutputStream(out);
+            if (encrypt) {
+                CubeStreams.encrypt(codec, body, chunks, StandardCharsets.UTF_8);
+            } else {
+                CubeStreams.decrypt(codec, body, chunks, StandardCharsets.UTF_8);
+            }
+            body.skipRemaining();
+            chunks.finish();
+        }
+
+        /**
+         * Reads the next line into {@code line} without its terminator. Returns its length, a length above
+         * {@link #MAX_LINE_LENGTH} if it was too long (the rest is discarded), or -1 at end of stream.
+         */
+        private int readLine() throws IOException {
+            int length = 0;
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) {
+                    return length == 0 ? -1 : length;
+                }
+                if (length >= MAX_LINE_LENGTH) {
+                    // Too long: keep reading to the end of the line, but store nothing
+                    length = MAX_LINE_LENGTH + 1;
+                    continue;
+                }
+                if (length == line.length) {
+                    line = Arrays.copyOf(line, Math.min(length * 2, MAX_LINE_LENGTH));
+                }
+                line[length++] = (byte) b;
+            }
+            if (length > 0 && length <= MAX_LINE_LENGTH && line[length - 1] == '\r') {
+                length--;
+            }
+            return length;
+        }
+
+        private void respond(String response) throws IOException {
+            out.write(response.getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+        }
+    }
+
+    private static long parseLength(String value) {
+        try {
+            long length = Long.parseLong(value.trim());
+            return length < 0 ? -1 : length;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns connection counts and the metrics of every operation as a single line of JSON.
+     */
+    String statsJson() {
+        long uptimeMillis = Math.max(1, System.currentTimeMillis() - startMillis);
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"uptimeMillis\":").append(uptimeMillis)
+                .append(",\"openConnections\":").append(openConnections.get())
+                .append(",\"totalConnections\":").append(totalConnections.sum())
+                .append(",\"metricsEnabled\":").append(CubeMetrics.isEnabled())
+                .append(",\"operations\":{");
+        CubeMetrics.Operation[] operations = CubeMetrics.Operation.values();
+        for (int i = 0; i < operations.length; i++) {
+            CubeMetrics.Snapshot snapshot = CubeMetrics.snapshot(operations[i]);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(operations[i]).append("\":{")
+                    .append("\"count\":").append(snapshot.getCount())
+                    .append(",\"perSecond\":").append(snapshot.getCount() * 1000 / uptimeMillis)
+                    .append(",\"characters\":").append(snapshot.getCharacters())
+                    .append(",\"charactersPerSecond\":").append(snapshot.getCharacters() * 1000 / uptimeMillis)
+                    .append(",\"meanNanos\":").append(Math.round(snapshot.getMeanNanos()))
+                    .append(",\"p50Nanos\":").append(snapshot.getPercentileNanos(50))
+                    .append(",\"p99Nanos\":").append(snapshot.getPercentileNanos(99))
+                    .append('}');
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Exposes the next {@code remaining} bytes of the connection as a stream of their own. Closing it does not
+     * close the connection.
+     */
+    private static final class BodyInputStream extends FilterInputStream {
+        private long remaining;
+
+        BodyInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Connection closed inside a request body");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining == 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read < 0) {
+                throw new IOException("Connection closed inside a request body");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        void skipRemaining() throws IOException {
+            while (remaining > 0) {
+                long skipped = in.skip(remaining);
+                if (skipped <= 0) {
+                    if (in.read() < 0) {
+                        throw new IOException("Connection closed inside a request body");
+                    }
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Frames everything written to it as length-prefixed chunks on the connection. {@link #finish()} writes
+     * the terminating empty chunk; closing does not close the connection.
+     */
+    private static final class ChunkedOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[8192];
+        private int count;
+
+        ChunkedOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                writeChunk();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (count == buffer.length) {
+                    writeChunk();
+                }
+                int n = Math.min(length, buffer.length - count);
+                System.arraycopy(bytes, offset, buffer, count, n);
+                count += n;
+                offset += n;
+                length -= n;
+            }
+        }
+
+        /**
+         * Sends what has been written so far as a chunk, so a slow body still produces output as it goes.
+         */
+        @Override
+        public void flush() throws IOException {
+            writeChunk();
+            out.flush();
+        }
+
+        void finish() throws IOException {
+            writeChunk();
+            out.write('0');
+            out.write('\n');
+        }
+
+        private void writeChunk() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            out.write(Integer.toString(count).getBytes(StandardCharsets.US_ASCII));
+            out.write('\n');
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
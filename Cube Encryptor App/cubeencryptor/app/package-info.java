@@ -0,0 +1,6 @@
+/**
+ * Headless front ends for the cipher core: the {@link cubeencryptor.app.CubeCli} command line and the
+ * {@link cubeencryptor.app.CubeServer} localhost service. Like the core they need neither AWT nor the desktop
+ * framework, e.g. {@code java -jar cube-encryptor-app-2.0.0.jar serve} with the core jar next to it.
+ */
+package cubeencryptor.app;
@@ -0,0 +1,126 @@
+package cubeencryptor.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import cubeencryptor.CubeCodec;
+import cubeencryptor.KeySchedule;
+
+/**
+ * Batch mode into an output directory: how inputs expand, the names outputs get, and the inputs refused before
+ * anything is written.
+ */
+class CubeCliTest {
+    private static final String KEY = "cli test key";
+    private static final CubeCodec CODEC = KeySchedule.derive(KEY).getCodec();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void directoriesKeepTheirRelativeNames() throws IOException {
+        write("in/a.txt", "alpha");
+        write("in/sub/b.txt", "beta");
+        assertEquals(0, run("encrypt", "--out", path("out"), path("in")));
+        assertEncrypted("out/a.txt", "alpha");
+        assertEncrypted("out/sub/b.txt", "beta");
+    }
+
+    @Test
+    void globsMatchBelowTheirBaseDirectory() throws IOException {
+        write("logs/x.log", "x");
+        write("logs/deep/y.log", "y");
+        write("logs/z.txt", "z");
+        assertEquals(0, run("encrypt", "--out", path("out"), path("logs") + "/**.log"));
+        assertEncrypted("out/x.log", "x");
+        assertEncrypted("out/deep/y.log", "y");
+        assertFalse(Files.exists(dir.resolve("out/z.txt")));
+    }
+
+    @Test
+    void decryptsWhatItEncrypted() throws IOException {
+        write("plain/p.txt", "round trip, ~!");
+        assertEquals(0, run("encrypt", "--out", path("cipher"), path("plain")));
+        assertEquals(0, run("decrypt", "--out", path("back"), path("cipher")));
+        assertEquals("round trip, ~!", read("back/p.txt"));
+    }
+
+    @Test
+    void refusesWritingOverItsOwnInput() throws IOException {
+        write("data/f.txt", "keep");
+        assertEquals(1, run("encrypt", "--out", path("data"), path("data/f.txt")));
+        assertEquals("keep", read("data/f.txt"));
+    }
+
+    @Test
+    void refusesWritingOverAnotherInput() throws IOException {
+        write("dir/sub/f", "from dir");
+        write("out/sub/f", "keep");
+        // dir/sub/f would go to out/sub/f, which is the second input
+        assertEquals(1, run("encrypt", "--out", path("out"), path("dir"), path("out/sub/f")));
+        assertEquals("keep", read("out/sub/f"));
+        assertEncrypted("out/f", "keep");
+    }
+
+    @Test
+    void refusesInputsSharingAnOutput() throws IOException {
+        write("a/f", "a");
+        write("b/f", "b");
+        write("c/g", "c");
+        assertEquals(1, run("encrypt", "--out", path("out"), path("a/f"), path("b/f"), path("c/g")));
+        assertFalse(Files.exists(dir.resolve("out/f")));
+        assertEncrypted("out/g", "c");
+    }
+
+    @Test
+    void parallelJobsAllFinishWhenOneFails() throws IOException {
+        for (int i = 0; i < 8; i++) {
+            write("in/f" + i, "file " + i);
+        }
+        assertEquals(1, run("encrypt", "--parallel", "3", "--out", path("out"), path("in"), path("missing")));
+        for (int i = 0; i < 8; i++) {
+            assertEncrypted("out/f" + i, "file " + i);
+        }
+    }
+
+    @Test
+    void stdinIsReadOnce() {
+        assertThrows(IllegalArgumentException.class, () -> run("encrypt", "--key", KEY, "-", "-"));
+    }
+
+    private static int run(String command, String... args) {
+        String[] all = new String[args.length + 3];
+        all[0] = command;
+        all[1] = "--key";
+        all[2] = KEY;
+        System.arraycopy(args, 0, all, 3, args.length);
+        return CubeCli.run(all);
+    }
+
+    private String path(String relative) {
+        return dir.resolve(relative).toString();
+    }
+
+    private void write(String relative, String text) throws IOException {
+        Path file = dir.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, text);
+    }
+
+    private String read(String relative) throws IOException {
+        return Files.readString(dir.resolve(relative), StandardCharsets.UTF_8);
+    }
+
+    private void assertEncrypted(String relative, String plaintext) throws IOException {
+        assertEquals(CODEC.encrypt(plaintext), read(relative), relative);
+    }
+}
@@ -0,0 +1,224 @@
+package cubeencryptor.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import cubeencryptor.CubeAlphabet;
+import cubeencryptor.CubeCodec;
+import cubeencryptor.KeySchedule;
+
+/**
+ * The line protocol over loopback on a free port: single-line and chunked requests, pipelining, the errors a
+ * client can provoke, and the bound on connections served at once.
+ */
+class CubeServerTest {
+    private static final String KEY = "server test key";
+    private static final CubeCodec CODEC = KeySchedule.derive(KEY).getCodec();
+
+    private CubeServer server;
+
+    @AfterEach
+    void stop() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void encryptsAndDecryptsLines() throws IOException {
+        try (Client client = connect(CubeServer.DEFAULT_MAX_CONNECTIONS)) {
+            client.send("ENC before any key");
+            assertTrue(client.readLine().startsWith("ERR "));
+            client.send("KEY " + KEY);
+            assertEquals("OK " + CODEC.getCubeCount(), client.readLine());
+            client.send("ENC Hello, cube!");
+            String ciphertext = CODEC.encrypt("Hello, cube!");
+            assertEquals("OK " + ciphertext, client.readLine());
+            client.send("DEC " + ciphertext + "\r");
+            assertEquals("OK Hello, cube!", client.readLine());
+            client.send("NOPE");
+            assertEquals("ERR unknown command: NOPE", client.readLine());
+            client.send("QUIT");
+            assertEquals("OK bye", client.readLine());
+            assertEquals(-1, client.in.read());
+        }
+    }
+
+    @Test
+    void answersPipelinedRequestsInOrder() throws IOException {
+        try (Client client = connect(CubeServer.DEFAULT_MAX_CONNECTIONS)) {
+            StringBuilder requests = new StringBuilder("KEY " + KEY + "\n");
+            for (int i = 0; i < 100; i++) {
+                requests.append("ENC line ").append(i).append('\n');
+            }
+            client.out.write(requests.toString().getBytes(StandardCharsets.UTF_8));
+            client.out.flush();
+            assertEquals("OK " + CODEC.getCubeCount(), client.readLine());
+            for (int i = 0; i < 100; i++) {
+                assertEquals("OK " + CODEC.encrypt("line " + i), client.readLine());
+            }
+        }
+    }
+
+    @Test
+    void streamsBodiesInChunks() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("Line ").append(i).append(" of the body\n");
+        }
+        byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+        try (Client client = connect(CubeServer.DEFAULT_MAX_CONNECTIONS)) {
+            client.send("KEY " + KEY);
+            client.readLine();
+            client.send("ENCS " + body.length);
+            client.out.write(body);
+            client.out.flush();
+            assertEquals("OK chunked", client.readLine());
+            String ciphertext = client.readChunks();
+            assertEquals(CODEC.encrypt(text), ciphertext);
+
+            byte[] cipherBody = ciphertext.getBytes(StandardCharsets.UTF_8);
+            client.send("DECS " + cipherBody.length);
+            client.out.write(cipherBody);
+            client.send("ENC after the body");
+            assertEquals("OK chunked", client.readLine());
+            assertEquals(CODEC.decrypt(ciphertext), client.readChunks());
+            assertEquals("OK " + CODEC.encrypt("after the body"), client.readLine());
+        }
+    }
+
+    @Test
+    void skipsBodiesSentWithoutAKey() throws IOException {
+        try (Client client = connect(CubeServer.DEFAULT_MAX_CONNECTIONS)) {
+            client.send("ENCS 5");
+            client.out.write("12345".getBytes(StandardCharsets.US_ASCII));
+            client.send("KEY " + KEY);
+            assertTrue(client.readLine().startsWith("ERR no key"));
+            assertEquals("OK " + CODEC.getCubeCount(), client.readLine());
+        }
+    }
+
+    @Test
+    void closesOnAnInvalidBodyLength() throws IOException {
+        try (Client client = connect(CubeServer.DEFAULT_MAX_CONNECTIONS)) {
+            client.send("ENCS lots");
+            assertEquals("ERR invalid body length: lots", client.readLine());
+            assertEquals(-1, client.in.read());
+        }
+    }
+
+    @Test
+    void refusesOverlongLinesAndCarriesOn() throws IOException {
+        try (Client client = connect(CubeServer.DEFAULT_MAX_CONNECTIONS)) {
+            byte[] line = new byte[CubeServer.MAX_LINE_LENGTH + 10];
+            Arrays.fill(line, (byte) 'a');
+            System.arraycopy("ENC ".getBytes(StandardCharsets.US_ASCII), 0, line, 0, 4);
+            client.out.write(line);
+            client.send("");
+            client.send("KEY " + KEY);
+            assertEquals("ERR request line longer than " + CubeServer.MAX_LINE_LENGTH + " bytes", client.readLine());
+            assertEquals("OK " + CODEC.getCubeCount(), client.readLine());
+        }
+    }
+
+    @Test
+    void servesNoMoreThanTheConnectionLimit() throws IOException {
+        try (Client first = connect(1)) {
+            first.send("KEY " + KEY);
+            first.readLine();
+            try (Client second = connect(server)) {
+                second.send("KEY " + KEY);
+                second.socket.setSoTimeout(300);
+                assertThrows(SocketTimeoutException.class, second::readLine);
+                first.send("QUIT");
+                first.readLine();
+                second.socket.setSoTimeout(10_000);
+                assertEquals("OK " + CODEC.getCubeCount(), second.readLine());
+            }
+        }
+    }
+
+    @Test
+    void reportsStats() throws IOException {
+        try (Client client = connect(CubeServer.DEFAULT_MAX_CONNECTIONS)) {
+            client.send("STATS");
+            String stats = client.readLine();
+            assertTrue(stats.startsWith("OK {\"uptimeMillis\":"), stats);
+            assertTrue(stats.contains("\"openConnections\":1"), stats);
+        }
+    }
+
+    private Client connect(int maxConnections) throws IOException {
+        server = new CubeServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                CubeAlphabet.PRINTABLE_ASCII, maxConnections);
+        server.start();
+        return connect(server);
+    }
+
+    private static Client connect(CubeServer server) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setSoTimeout(10_000);
+        return new Client(socket);
+    }
+
+    private static final class Client implements Closeable {
+        final Socket socket;
+        final InputStream in;
+        final OutputStream out;
+
+        Client(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = socket.getOutputStream();
+        }
+
+        void send(String line) throws IOException {
+            out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            for (int b = in.read(); b != '\n'; b = in.read()) {
+                if (b < 0) {
+                    throw new IOException("Connection closed");
+                }
+                line.write(b);
+            }
+            return line.toString(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Reads length-prefixed chunks up to the terminating "0" line.
+         */
+        String readChunks() throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            for (int length = Integer.parseInt(readLine()); length > 0; length = Integer.parseInt(readLine())) {
+                body.write(in.readNBytes(length));
+            }
+            return body.toString(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
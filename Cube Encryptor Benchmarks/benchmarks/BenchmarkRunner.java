@@ -0,0 +1,42 @@
+package benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler attached, so every score comes with its allocation rate
+ * (gc.alloc.rate.norm is bytes allocated per operation). Accepts the usual JMH command line, e.g.
+ * {@code java -jar benchmarks.jar CodecBenchmark.encrypt -p inputSize=1000000}; {@code -l} lists the benchmarks.
+ *
+ * {@code mvn package} builds target/benchmarks.jar with this class as its entry point. {@link RenderBenchmark}
+ * also needs the desktop module, which the desktop profile adds to the jar, and the Echelon framework jars on
+ * the class path.
+ *
+ * For a long multi-threaded run with round-trip checks, use {@link SoakHarness} instead.
+ */
+public final class BenchmarkRunner {
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.shouldHelp()) {
+            options.showHelp();
+            return;
+        }
+        if (options.shouldList()) {
+            new Runner(options).list();
+            return;
+        }
+        new Runner(new OptionsBuilder()
+                .parent(options)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,196 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import cubeencryptor.CubeBinaryFormat;
+import cubeencryptor.CubeBulkEncoder;
+import cubeencryptor.CubeCodec;
+import cubeencryptor.CubeStreams;
+import cubeencryptor.KeySchedule;
+import cubeencryptor.ParallelCubeCipher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of key derivation, encrypt and decrypt over input sizes from 100 B to 100 MB.
+ * Run through {@link BenchmarkRunner} to get the GC profiler's allocation rate alongside the scores.
+ *
+ * Key derivation and the codec have separate states, so the schedule benchmarks only run once per key length
+ * and never build the corpus, while the codec benchmarks run once per input size and distribution.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g", "--add-modules=jdk.incubator.vector"})
+public class CodecBenchmark {
+    // Key the codec benchmarks run with; lookups cost the same for any key
+    private static final int CODEC_KEY_LENGTH = 12;
+
+    @State(Scope.Benchmark)
+    public static class ScheduleState {
+        @Param({"0", "12", "95"})
+        public int keyLength;
+
+        private String rawKey;
+        private String sanitizedKey;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            rawKey = Corpus.key(keyLength, 7);
+            sanitizedKey = KeySchedule.sanitize(rawKey);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CodecState {
+        @Param({"100", "10000", "1000000", "100000000"})
+        public int inputSize;
+
+        @Param({"PROSE", "LOGS", "RANDOM_PRINTABLE", "NON_ASCII"})
+        public Corpus distribution;
+
+        private CubeCodec codec;
+        private ParallelCubeCipher parallelCipher;
+        private CubeBulkEncoder bulkEncoder;
+        private String plaintext;
+        private byte[] plaintextUtf8;
+        private String ciphertext;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            codec = KeySchedule.derive(Corpus.key(CODEC_KEY_LENGTH, 7)).getCodec();
+            parallelCipher = new ParallelCubeCipher(1 << 16);
+            bulkEncoder = new CubeBulkEncoder(codec, false);
+            plaintext = distribution.generate(inputSize, 42);
+            plaintextUtf8 = plaintext.getBytes(StandardCharsets.UTF_8);
+            ciphertext = codec.encrypt(plaintext);
+        }
+    }
+
+    /**
+     * The Vector API encoder for the codec state's key. A JVM or CPU where the vector loop declines fails only the
+     * benchmarks that use this state; the other codec benchmarks still run.
+     */
+    @State(Scope.Benchmark)
+    public static class VectorState {
+        private CubeBulkEncoder encoder;
+
+        @Setup(Level.Trial)
+        public void setUp(CodecState codecState) {
+            encoder = new CubeBulkEncoder(codecState.codec, true);
+            if (!encoder.isVectorized()) {
+                throw new IllegalStateException("The Vector API loop cannot run on this JVM");
+            }
+        }
+    }
+
+    @Benchmark
+    public String sanitizeKey(ScheduleState state) {
+        return KeySchedule.sanitize(state.rawKey);
+    }
+
+    @Benchmark
+    public List<String[]> generateCubes(ScheduleState state) {
+        return KeySchedule.splitIntoCubes(state.sanitizedKey);
+    }
+
+    @Benchmark
+    public KeySchedule deriveSchedule(ScheduleState state) {
+        return KeySchedule.derive(state.rawKey);
+    }
+
+    /**
+     * Coordinate lookup for every character, the work the old findCoordinates scan did.
+     */
+    @Benchmark
+    public void findCoordinates(CodecState state, Blackhole blackhole) {
+        String text = state.plaintext;
+        for (int i = 0; i < text.length(); i++) {
+            blackhole.consume(state.codec.codeOf(text.charAt(i)));
+        }
+    }
+
+    @Benchmark
+    public String encrypt(CodecState state) {
+        return state.codec.encrypt(state.plaintext);
+    }
+
+    @Benchmark
+    public String decrypt(CodecState state) {
+        return state.codec.decrypt(state.ciphertext);
+    }
+
+    @Benchmark
+    public String encryptParallel(CodecState state) {
+        return state.parallelCipher.encrypt(state.codec, state.plaintext);
+    }
+
+    @Benchmark
+    public String decryptParallel(CodecState state) {
+        return state.parallelCipher.decrypt(state.codec, state.ciphertext);
+    }
+
+    /**
+     * UTF-8 bytes in, ciphertext bytes out through the String-based encrypt loop; the baseline for
+     * {@link #encryptBytesBulk(CodecState)} (64-bit words) and
+     * {@link #encryptBytesVector(CodecState, VectorState)} (the Vector API, which the fork adds with
+     * {@code --add-modules}).
+     */
+    @Benchmark
+    public byte[] encryptBytes(CodecState state) {
+        String text = new String(state.plaintextUtf8, StandardCharsets.UTF_8);
+        return state.codec.encrypt(text).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public byte[] encryptBytesBulk(CodecState state) {
+        return state.bulkEncoder.encryptText(state.plaintextUtf8, 0, state.plaintextUtf8.length);
+    }
+
+    @Benchmark
+    public byte[] encryptBytesVector(CodecState state, VectorState vector) {
+        return vector.encoder.encryptText(state.plaintextUtf8, 0, state.plaintextUtf8.length);
+    }
+
+    @Benchmark
+    public byte[] encryptBinary(CodecState state) {
+        return CubeBinaryFormat.encrypt(state.codec, new String(state.plaintextUtf8, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public byte[] encryptBinaryBulk(CodecState state) {
+        return state.bulkEncoder.encryptBinary(state.plaintextUtf8, 0, state.plaintextUtf8.length);
+    }
+
+    @Benchmark
+    public byte[] encryptBinaryVector(CodecState state, VectorState vector) {
+        return vector.encoder.encryptBinary(state.plaintextUtf8, 0, state.plaintextUtf8.length);
+    }
+
+    @Benchmark
+    public void encryptStream(CodecState state) throws IOException {
+        CubeStreams.encrypt(state.codec, new StringReader(state.plaintext), Writer.nullWriter());
+    }
+
+    @Benchmark
+    public void decryptStream(CodecState state) throws IOException {
+        CubeStreams.decrypt(state.codec, new StringReader(state.ciphertext), Writer.nullWriter());
+    }
+}
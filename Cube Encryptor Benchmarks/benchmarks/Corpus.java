@@ -0,0 +1,100 @@
+package benchmarks;
+
+import java.util.Random;
+
+/**
+ * Synthetic plaintext with different character distributions.
+ */
+public enum Corpus {
+    /** Lower-case English-like words with punctuation and line breaks. */
+    PROSE {
+        @Override
+        void fill(Random random, StringBuilder out, int length) {
+            while (out.length() < length) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                out.append(out.length() == 0 || random.nextInt(12) == 0 ? capitalize(word) : word);
+                int next = random.nextInt(20);
+                out.append(next == 0 ? ". " : next == 1 ? ", " : next == 2 ? ".\n" : " ");
+            }
+        }
+    },
+    /** Timestamped log lines with levels, thread names and numbers. */
+    LOGS {
+        @Override
+        void fill(Random random, StringBuilder out, int length) {
+            long millis = 1_700_000_000_000L;
+            while (out.length() < length) {
+                millis += random.nextInt(2000);
+                out.append(millis).append(' ').append(LEVELS[random.nextInt(LEVELS.length)])
+                        .append(" [worker-").append(random.nextInt(16)).append("] ")
+                        .append(WORDS[random.nextInt(WORDS.length)]).append(" id=")
+                        .append(Integer.toHexString(random.nextInt())).append(" took ")
+                        .append(random.nextInt(500)).append("ms\n");
+            }
+        }
+    },
+    /** Uniformly random printable ASCII (32-126), i.e. every symbol on the cubes. */
+    RANDOM_PRINTABLE {
+        @Override
+        void fill(Random random, StringBuilder out, int length) {
+            while (out.length() < length) {
+                out.append((char) (32 + random.nextInt(95)));
+            }
+        }
+    },
+    /** Mostly printable ASCII with a quarter of the characters outside 32-126 (accents, CJK, emoji, controls). */
+    NON_ASCII {
+        @Override
+        void fill(Random random, StringBuilder out, int length) {
+            while (out.length() < length) {
+                if (random.nextInt(4) != 0) {
+                    out.append((char) (32 + random.nextInt(95)));
+                } else {
+                    out.append(EXOTIC[random.nextInt(EXOTIC.length)]);
+                }
+            }
+        }
+    };
+
+    private static final String[] WORDS = {
+        "the", "cube", "cipher", "of", "and", "a", "to", "in", "is", "face", "key", "message", "that", "it",
+        "with", "for", "as", "was", "on", "are", "be", "this", "from", "by", "or", "have", "an", "they", "which",
+        "one", "you", "were", "all", "we", "when", "there", "can", "encrypted", "their", "has", "more", "if"
+    };
+    private static final String[] LEVELS = {"INFO", "DEBUG", "WARN", "ERROR"};
+    private static final String[] EXOTIC = {"é", "ü", "ß", "ñ", "Ω", "日本", "€", "\t", "\n", "😀"};
+
+    abstract void fill(Random random, StringBuilder out, int length);
+
+    /**
+     * Generates exactly {@code length} characters; the same seed always gives the same text.
+     */
+    String generate(int length, long seed) {
+        StringBuilder out = new StringBuilder(length + 64);
+        fill(new Random(seed), out, length);
+        out.setLength(length);
+        return out.toString();
+    }
+
+    /**
+     * Returns a key of distinct printable characters of the given length (at most 95).
+     */
+    static String key(int length, long seed) {
+        Random random = new Random(seed);
+        char[] printable = new char[95];
+        for (int i = 0; i < printable.length; i++) {
+            printable[i] = (char) (32 + i);
+        }
+        for (int i = printable.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            char tmp = printable[i];
+            printable[i] = printable[j];
+            printable[j] = tmp;
+        }
+        return new String(printable, 0, Math.min(length, printable.length));
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
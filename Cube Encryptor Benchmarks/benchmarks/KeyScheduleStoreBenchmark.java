@@ -0,0 +1,103 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import cubeencryptor.CubeAlphabet;
+import cubeencryptor.KeySchedule;
+import cubeencryptor.KeyScheduleStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * A {@link KeyScheduleStore} against deriving every schedule, per key for {@value #KEYS} keys.
+ *
+ * {@code deriveAll} is what a process does without a store. {@code openStore} is the startup cost with one,
+ * before any key is used; {@code openAndGetAll} then asks for every key once, and {@code getAll} asks again,
+ * as every later lookup does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyScheduleStoreBenchmark {
+    private static final int KEYS = 1000;
+
+    @Param({"12", "95"})
+    public int keyLength;
+
+    private List<String> keys;
+    private Path file;
+    private KeyScheduleStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        keys = new ArrayList<>(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            keys.add(Corpus.key(keyLength, i));
+        }
+        file = Files.createTempFile("schedules", ".cubs");
+        KeyScheduleStore.write(file, CubeAlphabet.PRINTABLE_ASCII, keys);
+        store = KeyScheduleStore.open(file);
+        for (String key : keys) {
+            store.get(key);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store = null;
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public void deriveAll(Blackhole blackhole) {
+        for (String key : keys) {
+            blackhole.consume(KeySchedule.derive(key));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public KeyScheduleStore openStore() throws IOException {
+        return KeyScheduleStore.open(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public void openAndGetAll(Blackhole blackhole) throws IOException {
+        KeyScheduleStore fresh = KeyScheduleStore.open(file);
+        for (String key : keys) {
+            blackhole.consume(fresh.get(key));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(KEYS)
+    public void getAll(Blackhole blackhole) {
+        for (String key : keys) {
+            blackhole.consume(store.get(key));
+        }
+    }
+}
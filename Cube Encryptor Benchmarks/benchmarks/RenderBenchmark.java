@@ -0,0 +1,108 @@
+package benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.JComponent;
+
+import cubeencryptor.KeySchedule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Frame time of the Cube Navigator paint paths, rendered headless into a BufferedImage. {@code Main} lives in
+ * the default package and cannot be imported, so its package-private {@code CubeRenderers} is looked up by name;
+ * the desktop module has to be on the classpath (build with the desktop profile).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+    @Param({"150x300", "550x300", "1100x800"})
+    public String size;
+
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private JComponent mainCube;
+    private JComponent preview;
+    private JComponent openNet;
+    private MethodHandle rotateBy;
+    private int frame;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        int width = Integer.parseInt(size.substring(0, size.indexOf('x')));
+        int height = Integer.parseInt(size.substring(size.indexOf('x') + 1));
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        graphics = image.createGraphics();
+
+        String[] cube = KeySchedule.derive("benchmark").getCubes().get(0);
+        Class<?> type = Class.forName("Main$CubeRenderers");
+        // Both sit in the unnamed module, so the package-private members are open to a private lookup
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        Object renderers = lookup.findConstructor(type, MethodType.methodType(void.class, String[].class))
+                .invoke(cube);
+        mainCube = prepare(renderer(lookup, type, renderers, "mainCube"), width, height);
+        preview = prepare(renderer(lookup, type, renderers, "preview"), width, height);
+        openNet = prepare(renderer(lookup, type, renderers, "openNet"), width, height);
+        // Mouse drags are applied by the panel's frame timer, so the benchmark rotates the cube directly.
+        rotateBy = lookup.findVirtual(type, "rotateMainCube",
+                MethodType.methodType(void.class, double.class, double.class)).bindTo(renderers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paintMainCube() throws Throwable {
+        // A back-and-forth swing so every frame is painted at a new angle
+        double step = (frame++ & 32) == 0 ? 0.02 : -0.02;
+        rotateBy.invokeExact(step, step * 1.5);
+        mainCube.paint(graphics);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintPreview() {
+        preview.paint(graphics);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintOpenNet() {
+        openNet.paint(graphics);
+        return image;
+    }
+
+    private static JComponent renderer(MethodHandles.Lookup lookup, Class<?> type, Object renderers, String name)
+            throws Throwable {
+        return (JComponent) lookup.findGetter(type, name, JComponent.class).invoke(renderers);
+    }
+
+    private static JComponent prepare(JComponent panel, int width, int height) {
+        panel.setDoubleBuffered(false);
+        panel.setSize(width, height);
+        return panel;
+    }
+}
@@ -0,0 +1,510 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.ThreadMXBean;
+
+import cubeencryptor.CubeAlphabet;
+import cubeencryptor.CubeCodec;
+import cubeencryptor.KeySchedule;
+
+/**
+ * Soak test: encrypts and decrypts records from every {@link Corpus} on many threads for a fixed time, checks
+ * every round trip and writes a JSON report of throughput, latency percentiles, allocation and GC pauses.
+ * A plain main rather than a JMH benchmark, since it measures a loaded JVM over minutes, not one operation.
+ *
+ * <pre>
+ * benchmarks.SoakHarness [--duration SECONDS] [--warmup SECONDS] [--threads N] [--record-size CHARS]
+ *                        [--key-length N] [--alphabet RANGES] [--out FILE]
+ * </pre>
+ *
+ * A round trip must give back the record with every symbol that is on no cube replaced by '?' (per char for
+ * the default printable ASCII alphabet, per code point otherwise); key characters outside the alphabet get
+ * faces too, so the codec, not the alphabet, decides which symbols survive. The report's keys are always written
+ * in the same order, so reports from two releases can be diffed. The exit code is 1 if any round trip failed.
+ */
+public final class SoakHarness {
+    private static final String USAGE = "Usage: SoakHarness [--duration SECONDS] [--warmup SECONDS] [--threads N]"
+            + " [--record-size CHARS] [--key-length N] [--alphabet RANGES] [--out FILE]";
+    private static final int RECORDS_PER_CORPUS = 64;
+
+    private final CubeCodec codec;
+    private final CubeAlphabet alphabet;
+    private final int threads;
+    private final int recordSize;
+    // Per corpus: plaintext records and what decrypting their ciphertext must give
+    private final String[][] records;
+    private final String[][] expected;
+
+    private SoakHarness(CubeCodec codec, CubeAlphabet alphabet, int threads, int recordSize) {
+        this.codec = codec;
+        this.alphabet = alphabet;
+        this.threads = threads;
+        this.recordSize = recordSize;
+        Corpus[] corpora = Corpus.values();
+        records = new String[corpora.length][RECORDS_PER_CORPUS];
+        expected = new String[corpora.length][RECORDS_PER_CORPUS];
+        for (int c = 0; c < corpora.length; c++) {
+            for (int r = 0; r < RECORDS_PER_CORPUS; r++) {
+                records[c][r] = corpora[c].generate(recordSize, 1000L * c + r);
+                expected[c][r] = expectedRoundTrip(records[c][r]);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int duration = 60;
+        int warmup = 10;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int recordSize = 1000;
+        int keyLength = 12;
+        CubeAlphabet alphabet = CubeAlphabet.PRINTABLE_ASCII;
+        String out = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--duration":
+                        duration = positive(args, ++i, arg);
+                        break;
+                    case "--warmup":
+                        warmup = Integer.parseInt(value(args, ++i, arg));
+                        break;
+                    case "--threads":
+                        threads = positive(args, ++i, arg);
+                        break;
+                    case "--record-size":
+                        recordSize = positive(args, ++i, arg);
+                        break;
+                    case "--key-length":
+                        keyLength = Integer.parseInt(value(args, ++i, arg));
+                        break;
+                    case "--alphabet":
+                        alphabet = CubeAlphabet.parse(value(args, ++i, arg));
+                        break;
+                    case "--out":
+                        out = value(args, ++i, arg);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown option " + arg);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("soak: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        CubeCodec codec = KeySchedule.derive(Corpus.key(keyLength, 7), alphabet).getCodec();
+        SoakHarness harness = new SoakHarness(codec, alphabet, threads, recordSize);
+        if (warmup > 0) {
+            System.err.println("soak: warming up for " + warmup + " s");
+            harness.run(warmup);
+        }
+        System.err.println("soak: measuring " + threads + " threads for " + duration + " s");
+        Result result = harness.run(duration);
+        String report = result.toJson(harness, duration, warmup, keyLength);
+        if (out == null) {
+            System.out.println(report);
+        } else {
+            Files.write(Paths.get(out), (report + "\n").getBytes(StandardCharsets.UTF_8));
+            System.err.println("soak: report written to " + out);
+        }
+        System.exit(result.failures() == 0 ? 0 : 1);
+    }
+
+    /**
+     * The record as a round trip returns it: symbols off the cubes come back as '?'.
+     */
+    private String expectedRoundTrip(String text) {
+        StringBuilder expected = new StringBuilder(text.length());
+        if (!codec.isCodePointMode()) {
+            for (int i = 0; i < text.length(); i++) {
+                char ch = text.charAt(i);
+                expected.append(codec.codeOf(ch) >= 0 ? ch : '?');
+            }
+        } else {
+            text.codePoints().forEach(cp -> {
+                if (codec.codeOf(cp) >= 0) {
+                    expected.appendCodePoint(cp);
+                } else {
+                    expected.append('?');
+                }
+            });
+        }
+        return expected.toString();
+    }
+
+    /**
+     * Runs every thread for {@code seconds}, each one cycling through all corpora, and collects what they measured.
+     */
+    private Result run(int seconds) throws InterruptedException {
+        ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        GcRecorder gc = new GcRecorder();
+        gc.start();
+
+        Worker[] workers = new Worker[threads];
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Worker(t, threadBean, ready, go);
+            workers[t].start();
+        }
+        ready.await();
+        long startNanos = System.nanoTime();
+        long deadline = startNanos + seconds * 1_000_000_000L;
+        for (Worker worker : workers) {
+            worker.deadline = deadline;
+        }
+        go.countDown();
+        for (Worker worker : workers) {
+            worker.join();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        gc.stop();
+        return new Result(workers, elapsedNanos, gc);
+    }
+
+    private final class Worker extends Thread {
+        private final ThreadMXBean threadBean;
+        private final CountDownLatch ready;
+        private final CountDownLatch go;
+        private final int offset;
+        volatile long deadline;
+        final Histogram encryptLatency = new Histogram();
+        final Histogram decryptLatency = new Histogram();
+        final long[] roundTrips = new long[Corpus.values().length];
+        final long[] failures = new long[Corpus.values().length];
+        long characters;
+        long allocatedBytes;
+        String firstFailure;
+
+        Worker(int index, ThreadMXBean threadBean, CountDownLatch ready, CountDownLatch go) {
+            super("soak-" + index);
+            this.offset = index;
+            this.threadBean = threadBean;
+            this.ready = ready;
+            this.go = go;
+        }
+
+        @Override
+        public void run() {
+            ready.countDown();
+            try {
+                go.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long end = deadline;
+            long allocatedBefore = threadBean.getThreadAllocatedBytes(getId());
+            int corpora = records.length;
+            // Threads start at different records so they do not all work on the same strings
+            for (long i = offset * 7L; ; i++) {
+                int c = (int) (i % corpora);
+                int r = (int) ((i / corpora) % RECORDS_PER_CORPUS);
+                String record = records[c][r];
+                long t0 = System.nanoTime();
+                String ciphertext = codec.encrypt(record);
+                long t1 = System.nanoTime();
+                String decrypted = codec.decrypt(ciphertext);
+                long t2 = System.nanoTime();
+                encryptLatency.record(t1 - t0);
+                decryptLatency.record(t2 - t1);
+                roundTrips[c]++;
+                characters += record.length();
+                if (!decrypted.equals(expected[c][r])) {
+                    failures[c]++;
+                    if (firstFailure == null) {
+                        firstFailure = Corpus.values()[c] + " record " + r;
+                    }
+                }
+                if (t2 >= end) {
+                    break;
+                }
+            }
+            allocatedBytes = threadBean.getThreadAllocatedBytes(getId()) - allocatedBefore;
+        }
+    }
+
+    /**
+     * Log-linear latency histogram: 16 sub-buckets per power of two, so percentiles are within about 6%.
+     * Each worker fills its own, so recording needs no synchronization.
+     */
+    private static final class Histogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB_BUCKETS];
+        private long count;
+        private long total;
+        private long max;
+
+        void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            counts[index(nanos)]++;
+            count++;
+            total += nanos;
+            max = Math.max(max, nanos);
+        }
+
+        void add(Histogram other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            count += other.count;
+            total += other.total;
+            max = Math.max(max, other.max);
+        }
+
+        private static int index(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        /**
+         * Upper bound of the values in bucket {@code index}.
+         */
+        private static long upperBound(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+            long sub = index % SUB_BUCKETS;
+            return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+        }
+
+        long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(max, upperBound(i));
+                }
+            }
+            return max;
+        }
+
+        void appendJson(StringBuilder json) {
+            json.append("{\"count\":").append(count)
+                    .append(",\"mean\":").append(count == 0 ? 0 : total / count)
+                    .append(",\"p50\":").append(percentile(50))
+                    .append(",\"p90\":").append(percentile(90))
+                    .append(",\"p99\":").append(percentile(99))
+                    .append(",\"p999\":").append(percentile(99.9))
+                    .append(",\"max\":").append(max)
+                    .append('}');
+        }
+    }
+
+    /**
+     * Counts collections and their pauses while a run is in progress, from the collectors' notifications
+     * (HotSpot reports every collection with its duration). Concurrent collectors (G1's "G1 Concurrent GC",
+     * ZGC's and Shenandoah's "... Cycles") report whole cycles that run beside the application, so they are
+     * listed per collector but left out of the totals and the maximum pause.
+     */
+    private static final class GcRecorder implements NotificationListener {
+        private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        private final long[] countsBefore = new long[collectors.size()];
+        private final long[] timesBefore = new long[collectors.size()];
+        private final long[] counts = new long[collectors.size()];
+        private final long[] times = new long[collectors.size()];
+        private final AtomicLong maxPauseMillis = new AtomicLong();
+
+        void start() {
+            for (int i = 0; i < collectors.size(); i++) {
+                GarbageCollectorMXBean collector = collectors.get(i);
+                countsBefore[i] = collector.getCollectionCount();
+                timesBefore[i] = collector.getCollectionTime();
+                if (collector instanceof NotificationEmitter) {
+                    ((NotificationEmitter) collector).addNotificationListener(this, null, null);
+                }
+            }
+        }
+
+        void stop() {
+            for (int i = 0; i < collectors.size(); i++) {
+                GarbageCollectorMXBean collector = collectors.get(i);
+                counts[i] = collector.getCollectionCount() - countsBefore[i];
+                times[i] = collector.getCollectionTime() - timesBefore[i];
+                if (collector instanceof NotificationEmitter) {
+                    try {
+                        ((NotificationEmitter) collector).removeNotificationListener(this);
+                    } catch (javax.management.ListenerNotFoundException e) {
+                        // Never added
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            if (isPauseCollector(info.getGcName())) {
+                maxPauseMillis.accumulateAndGet(info.getGcInfo().getDuration(), Math::max);
+            }
+        }
+
+        private static boolean isPauseCollector(String name) {
+            return !name.contains("Cycles") && !name.contains("Concurrent");
+        }
+
+        void appendJson(StringBuilder json) {
+            long totalCount = 0;
+            long totalTime = 0;
+            for (int i = 0; i < collectors.size(); i++) {
+                if (isPauseCollector(collectors.get(i).getName())) {
+                    totalCount += counts[i];
+                    totalTime += times[i];
+                }
+            }
+            json.append("{\"collections\":").append(totalCount)
+                    .append(",\"timeMillis\":").append(totalTime)
+                    .append(",\"maxPauseMillis\":").append(maxPauseMillis.get())
+                    .append(",\"collectors\":{");
+            for (int i = 0; i < collectors.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append('"').append(collectors.get(i).getName()).append("\":{\"collections\":").append(counts[i])
+                        .append(",\"timeMillis\":").append(times[i]).append('}');
+            }
+            json.append("}}");
+        }
+    }
+
+    private static final class Result {
+        private final Histogram encryptLatency = new Histogram();
+        private final Histogram decryptLatency = new Histogram();
+        private final long[] roundTrips = new long[Corpus.values().length];
+        private final long[] failures = new long[Corpus.values().length];
+        private final List<String> failureSamples = new ArrayList<>();
+        private final long elapsedNanos;
+        private final GcRecorder gc;
+        private long characters;
+        private long allocatedBytes;
+
+        Result(Worker[] workers, long elapsedNanos, GcRecorder gc) {
+            this.elapsedNanos = elapsedNanos;
+            this.gc = gc;
+            for (Worker worker : workers) {
+                encryptLatency.add(worker.encryptLatency);
+                decryptLatency.add(worker.decryptLatency);
+                for (int c = 0; c < roundTrips.length; c++) {
+                    roundTrips[c] += worker.roundTrips[c];
+                    failures[c] += worker.failures[c];
+                }
+                characters += worker.characters;
+                allocatedBytes += worker.allocatedBytes;
+                if (worker.firstFailure != null) {
+                    failureSamples.add(worker.firstFailure);
+                }
+            }
+        }
+
+        long failures() {
+            long total = 0;
+            for (long f : failures) {
+                total += f;
+            }
+            return total;
+        }
+
+        String toJson(SoakHarness harness, int duration, int warmup, int keyLength) {
+            double seconds = elapsedNanos / 1e9;
+            long totalRoundTrips = 0;
+            for (long n : roundTrips) {
+                totalRoundTrips += n;
+            }
+            StringBuilder json = new StringBuilder(2048);
+            json.append("{\"report\":\"cube-soak\",\"version\":1")
+                    .append(",\"jvm\":{\"version\":\"").append(System.getProperty("java.version"))
+                    .append("\",\"processors\":").append(Runtime.getRuntime().availableProcessors())
+                    .append(",\"maxHeapBytes\":").append(Runtime.getRuntime().maxMemory()).append('}')
+                    .append(",\"config\":{\"durationSeconds\":").append(duration)
+                    .append(",\"warmupSeconds\":").append(warmup)
+                    .append(",\"threads\":").append(harness.threads)
+                    .append(",\"recordSize\":").append(harness.recordSize)
+                    .append(",\"keyLength\":").append(keyLength)
+                    .append(",\"alphabet\":\"").append(harness.alphabet).append("\"}")
+                    .append(",\"elapsedSeconds\":").append(format(seconds))
+                    .append(",\"roundTrips\":").append(totalRoundTrips)
+                    .append(",\"failures\":").append(failures())
+                    .append(",\"throughput\":{\"roundTripsPerSecond\":").append(format(totalRoundTrips / seconds))
+                    .append(",\"charactersPerSecond\":").append(format(characters / seconds)).append('}')
+                    .append(",\"latencyNanos\":{\"encrypt\":");
+            encryptLatency.appendJson(json);
+            json.append(",\"decrypt\":");
+            decryptLatency.appendJson(json);
+            json.append("},\"allocation\":{\"bytes\":").append(allocatedBytes)
+                    .append(",\"bytesPerSecond\":").append(format(allocatedBytes / seconds))
+                    .append(",\"bytesPerRoundTrip\":")
+                    .append(format(totalRoundTrips == 0 ? 0 : (double) allocatedBytes / totalRoundTrips))
+                    .append("},\"gc\":");
+            gc.appendJson(json);
+            json.append(",\"corpora\":{");
+            Corpus[] corpora = Corpus.values();
+            for (int c = 0; c < corpora.length; c++) {
+                if (c > 0) {
+                    json.append(',');
+                }
+                json.append('"').append(corpora[c]).append("\":{\"roundTrips\":").append(roundTrips[c])
+                        .append(",\"failures\":").append(failures[c]).append('}');
+            }
+            json.append("},\"failureSamples\":[");
+            for (int i = 0; i < failureSamples.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append('"').append(failureSamples.get(i)).append('"');
+            }
+            return json.append("]}").toString();
+        }
+
+        private static String format(double value) {
+            return String.format(Locale.ROOT, "%.1f", value);
+        }
+    }
+
+    private static int positive(String[] args, int index, String option) {
+        int value = Integer.parseInt(value(args, index, option));
+        if (value < 1) {
+            throw new IllegalArgumentException(option + " must be at least 1");
+        }
+        return value;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[index];
+    }
+}
@@ -0,0 +1,25 @@
+package cubeencryptor;
+
+/**
+ * Wide loop over runs of ASCII input for {@link CubeBulkEncoder}. Each call translates whole chunks from the
+ * start of the range and stops at the first chunk it cannot take, which the encoder's scalar loop then handles.
+ */
+interface AsciiKernel {
+
+    /**
+     * Number of input bytes in a chunk.
+     */
+    int chunkLength();
+
+    /**
+     * Writes the binary code of every byte of whole all-ASCII chunks to {@code out} from {@code pos}, one byte
+     * per input byte, and returns the index of the first input byte not translated.
+     */
+    int encodeBinary(byte[] utf8, int from, int to, byte[] out, int pos);
+
+    /**
+     * Writes the coordinate and separator of every byte of whole chunks whose bytes are all ASCII and all on a
+     * cube, so every token has the same length, and returns the index of the first input byte not translated.
+     */
+    int encodeText(byte[] utf8, int from, int to, byte[] out, int pos);
+}
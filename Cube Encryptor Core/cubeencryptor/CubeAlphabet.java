@@ -0,0 +1,189 @@
+package cubeencryptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The set of symbols a sanitized key is completed with, as ordered ranges of Unicode code points.
+ *
+ * The default {@link #PRINTABLE_ASCII} alphabet keeps the original behaviour: keys and text are handled
+ * char by char. Any other alphabet works on whole code points, so characters outside the Basic Multilingual
+ * Plane are single symbols.
+ */
+public final class CubeAlphabet {
+    public static final CubeAlphabet PRINTABLE_ASCII = new CubeAlphabet(new int[] {32, 126});
+
+    // Inclusive [start, end] pairs
+    private final int[] ranges;
+    private final int size;
+
+    private CubeAlphabet(int[] ranges) {
+        this.ranges = ranges;
+        int total = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            total += ranges[i + 1] - ranges[i] + 1;
+        }
+        this.size = total;
+    }
+
+    /**
+     * Creates an alphabet from inclusive code point ranges given as start/end pairs, in the order the
+     * symbols should be appended to keys. Surrogate code points are skipped, and ranges that hold nothing else
+     * are rejected. Ranges must not overlap, since a symbol listed twice would sit on two faces and no longer
+     * have a single code.
+     */
+    public static CubeAlphabet of(int... ranges) {
+        if (ranges.length == 0 || ranges.length % 2 != 0) {
+            throw new IllegalArgumentException("Ranges must be given as start/end pairs");
+        }
+        List<Integer> cleaned = new ArrayList<>();
+        for (int i = 0; i < ranges.length; i += 2) {
+            int start = ranges[i];
+            int end = ranges[i + 1];
+            if (start > end || start < 0 || end > Character.MAX_CODE_POINT) {
+                throw new IllegalArgumentException("Invalid code point range " + start + "-" + end);
+            }
+            // Lone surrogates are not characters; cut them out of the range
+            if (start < Character.MIN_SURROGATE && end >= Character.MIN_SURROGATE) {
+                cleaned.add(start);
+                cleaned.add((int) Character.MIN_SURROGATE - 1);
+                start = Character.MAX_SURROGATE + 1;
+            } else if (start >= Character.MIN_SURROGATE && start <= Character.MAX_SURROGATE) {
+                start = Character.MAX_SURROGATE + 1;
+            }
+            if (start <= end) {
+                cleaned.add(start);
+                cleaned.add(end);
+            }
+        }
+        if (cleaned.isEmpty()) {
+            throw new IllegalArgumentException("Ranges hold only surrogate code points, which are not characters");
+        }
+        int[] pairs = new int[cleaned.size()];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = cleaned.get(i);
+        }
+        checkDisjoint(pairs);
+        if (pairs.length == 2 && pairs[0] == 32 && pairs[1] == 126) {
+            return PRINTABLE_ASCII;
+        }
+        return new CubeAlphabet(pairs);
+    }
+
+    private static void checkDisjoint(int[] pairs) {
+        long[] sorted = new long[pairs.length / 2];
+        for (int i = 0; i < sorted.length; i++) {
+            // Start in the high half so sorting orders by start; the index finds the end again
+            sorted[i] = (long) pairs[2 * i] << 32 | i;
+        }
+        Arrays.sort(sorted);
+        for (int i = 1; i < sorted.length; i++) {
+            int previous = (int) sorted[i - 1];
+            int current = (int) sorted[i];
+            if (pairs[2 * current] <= pairs[2 * previous + 1]) {
+                throw new IllegalArgumentException("Overlapping code point ranges " + pairs[2 * previous] + "-"
+                        + pairs[2 * previous + 1] + " and " + pairs[2 * current] + "-" + pairs[2 * current + 1]);
+            }
+        }
+    }
+
+    /**
+     * Parses a comma separated list of ranges such as {@code "32-126,0xA0-0x17F,0x3040-0x30FF"} or
+     * {@code "U+0400-U+04FF"}. A single value stands for a one-symbol range.
+     *
+     * @throws IllegalArgumentException if the spec is malformed or, as for {@link #of(int...)}, the ranges
+     *         overlap or hold only surrogates
+     */
+    public static CubeAlphabet parse(String spec) {
+        List<Integer> values = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String range = part.trim();
+            if (range.isEmpty()) {
+                continue;
+            }
+            int dash = range.indexOf('-', 1);
+            String start = dash < 0 ? range : range.substring(0, dash);
+            String end = dash < 0 ? range : range.substring(dash + 1);
+            values.add(parseCodePoint(start.trim()));
+            values.add(parseCodePoint(end.trim()));
+        }
+        int[] ranges = new int[values.size()];
+        for (int i = 0; i < ranges.length; i++) {
+            ranges[i] = values.get(i);
+        }
+        return of(ranges);
+    }
+
+    private static int parseCodePoint(String value) {
+        String lower = value.toLowerCase();
+        if (lower.startsWith("0x") || lower.startsWith("u+")) {
+            return Integer.parseInt(value.substring(2), 16);
+        }
+        return Integer.parseInt(value);
+    }
+
+    /**
+     * Returns true for the default printable ASCII alphabet, which is processed char by char.
+     */
+    public boolean isLegacy() {
+        return this == PRINTABLE_ASCII;
+    }
+
+    /**
+     * Number of code points in the alphabet.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the code point is in one of the ranges, i.e. it survives a round trip through a schedule
+     * for this alphabet.
+     */
+    public boolean contains(int codePoint) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (codePoint >= ranges[i] && codePoint <= ranges[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int rangeCount() {
+        return ranges.length / 2;
+    }
+
+    int rangeStart(int range) {
+        return ranges[range * 2];
+    }
+
+    int rangeEnd(int range) {
+        return ranges[range * 2 + 1];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CubeAlphabet && Arrays.equals(ranges, ((CubeAlphabet) o).ranges);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(ranges);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder spec = new StringBuilder();
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (spec.length() > 0) {
+                spec.append(',');
+            }
+            spec.append("U+").append(Integer.toHexString(ranges[i]).toUpperCase());
+            if (ranges[i + 1] != ranges[i]) {
+                spec.append("-U+").append(Integer.toHexString(ranges[i + 1]).toUpperCase());
+            }
+        }
+        return spec.toString();
+    }
+}
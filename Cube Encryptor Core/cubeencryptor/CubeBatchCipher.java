@@ -0,0 +1,326 @@
+package cubeencryptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Encrypts or decrypts many short records, each under the key its key id names.
+ *
+ * Key ids are resolved once per batch: a single pass looks every record's key id up in a map and numbers the
+ * distinct ids, leaving an int group per record; from then on records are handled by index only. The resolver is
+ * asked once per distinct key id, on the calling thread, and each distinct key's schedule is fetched from the
+ * cache once, in parallel. The records are grouped with a counting sort and cut into slices that are encoded on
+ * the executor. Results come back in input order, with {@link Stats} on the batch.
+ *
+ * Records are encoded with {@link CubeCodec#encode} and {@link CubeCodec#decodeTokens} rather than the public
+ * encrypt and decrypt, so a batch records one {@link CubeMetrics} sample for all its characters instead of one per
+ * record, and emits no per-record JFR events.
+ */
+public class CubeBatchCipher {
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+    // Smallest number of records handed to one task
+    private static final int MIN_SLICE = 256;
+
+    private final Function<String, String> keyResolver;
+    private final KeyScheduleCache cache;
+    private final Executor executor;
+    private final int parallelism;
+
+    /**
+     * Uses a cache of {@link #DEFAULT_CACHE_SIZE} printable ASCII schedules and the common ForkJoinPool.
+     */
+    public CubeBatchCipher(Function<String, String> keyResolver) {
+        this(keyResolver, new KeyScheduleCache(DEFAULT_CACHE_SIZE), ForkJoinPool.commonPool(),
+                ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * @param keyResolver maps a key id to its raw key, or to null if the id is unknown
+     * @param cache       cache the schedules come from; it outlives the batch, so recurring keys are derived once
+     * @param executor    executor schedules are fetched and slices encoded on
+     * @param parallelism number of threads the executor can run at once, used to size the slices
+     */
+    public CubeBatchCipher(Function<String, String> keyResolver, KeyScheduleCache cache, Executor executor,
+            int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.keyResolver = keyResolver;
+        this.cache = cache;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    public KeyScheduleCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Encrypts every record's payload under its key, as {@link CubeCodec#encrypt(CharSequence)} would.
+     *
+     * @throws IllegalArgumentException if the resolver knows no key for a record's key id
+     */
+    public Result encrypt(Collection<Record> records) {
+        return run(records, true);
+    }
+
+    /**
+     * Decrypts every record's payload under its key, as {@link CubeCodec#decrypt(CharSequence)} would.
+     *
+     * @throws IllegalArgumentException if the resolver knows no key for a record's key id
+     */
+    public Result decrypt(Collection<Record> records) {
+        return run(records, false);
+    }
+
+    private Result run(Collection<Record> records, boolean encrypt) {
+        long startNanos = System.nanoTime();
+        long metricsStart = CubeMetrics.start();
+        Record[] input = records.toArray(new Record[0]);
+        int n = input.length;
+
+        // Number every distinct key id, and every distinct raw key behind them; this is the only per-record lookup
+        long characters = 0;
+        Map<String, Integer> groupOfKeyId = new HashMap<>();
+        Map<String, Integer> keyOfRawKey = new HashMap<>();
+        List<String> rawKeys = new ArrayList<>();
+        int[] keyOfGroup = new int[16];
+        int[] groupOf = new int[n];
+        int[] groupSizes = new int[16];
+        for (int i = 0; i < n; i++) {
+            String keyId = input[i].getKeyId();
+            Integer group = groupOfKeyId.get(keyId);
+            if (group == null) {
+                String rawKey = keyResolver.apply(keyId);
+                if (rawKey == null) {
+                    throw new IllegalArgumentException("Unknown key id: " + keyId);
+                }
+                group = groupOfKeyId.size();
+                groupOfKeyId.put(keyId, group);
+                Integer key = keyOfRawKey.get(rawKey);
+                if (key == null) {
+                    key = rawKeys.size();
+                    keyOfRawKey.put(rawKey, key);
+                    rawKeys.add(rawKey);
+                }
+                if (group == keyOfGroup.length) {
+                    keyOfGroup = Arrays.copyOf(keyOfGroup, group * 2);
+                    groupSizes = Arrays.copyOf(groupSizes, group * 2);
+                }
+                keyOfGroup[group] = key;
+            }
+            groupOf[i] = group;
+            groupSizes[group]++;
+            characters += input[i].getPayload().length();
+        }
+        int groups = groupOfKeyId.size();
+
+        // Counting sort: the record indices of group g are order[groupStarts[g]] .. order[groupStarts[g + 1] - 1]
+        int[] groupStarts = new int[groups + 1];
+        for (int g = 0; g < groups; g++) {
+            groupStarts[g + 1] = groupStarts[g] + groupSizes[g];
+        }
+        int[] next = Arrays.copyOf(groupStarts, groups);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[next[groupOf[i]]++] = i;
+        }
+
+        // Fetch every schedule once, then encode slices of the grouped order; a slice may span several groups,
+        // so batches of many tiny groups do not turn into one task per record.
+        long[] keyNanos = new long[rawKeys.size()];
+        CubeCodec[] codecs = new CubeCodec[rawKeys.size()];
+        String[] output = new String[n];
+        if (parallelism == 1) {
+            for (int k = 0; k < codecs.length; k++) {
+                codecs[k] = schedule(rawKeys.get(k), keyNanos, k).getCodec();
+            }
+            encode(codecs, keyOfGroup, groupOf, input, order, 0, n, output, encrypt);
+        } else {
+            List<CompletableFuture<Void>> tasks = new ArrayList<>(codecs.length);
+            for (int k = 0; k < codecs.length; k++) {
+                int key = k;
+                tasks.add(CompletableFuture.runAsync(() -> {
+                    codecs[key] = schedule(rawKeys.get(key), keyNanos, key).getCodec();
+                }, executor));
+            }
+            joinAll(tasks);
+            tasks.clear();
+            // A few slices per thread evens out threads that finish early
+            int sliceSize = Math.max(MIN_SLICE, n / (parallelism * 4) + 1);
+            int[] keys = keyOfGroup;
+            for (int from = 0; from < n; from += sliceSize) {
+                int start = from;
+                int end = Math.min(n, from + sliceSize);
+                tasks.add(CompletableFuture.runAsync(
+                        () -> encode(codecs, keys, groupOf, input, order, start, end, output, encrypt), executor));
+            }
+            joinAll(tasks);
+        }
+
+        long totalKeyNanos = 0;
+        for (long nanos : keyNanos) {
+            totalKeyNanos += nanos;
+        }
+        CubeMetrics.record(encrypt ? CubeMetrics.Operation.ENCRYPT : CubeMetrics.Operation.DECRYPT, metricsStart,
+                characters);
+        return new Result(Arrays.asList(output),
+                new Stats(n, groups, rawKeys.size(), totalKeyNanos, System.nanoTime() - startNanos));
+    }
+
+    private KeySchedule schedule(String rawKey, long[] keyNanos, int key) {
+        long start = System.nanoTime();
+        KeySchedule schedule = cache.get(rawKey);
+        keyNanos[key] = System.nanoTime() - start;
+        return schedule;
+    }
+
+    /**
+     * Encodes the records at positions {@code from} to {@code to} of the grouped order. Records of one group are
+     * adjacent there, so the codec rarely changes from one record to the next. One builder serves the whole slice.
+     */
+    private static void encode(CubeCodec[] codecs, int[] keyOfGroup, int[] groupOf, Record[] input, int[] order,
+            int from, int to, String[] output, boolean encrypt) {
+        StringBuilder out = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            int record = order[i];
+            CubeCodec codec = codecs[keyOfGroup[groupOf[record]]];
+            String payload = input[record].getPayload();
+            out.setLength(0);
+            if (encrypt) {
+                codec.encode(payload, 0, payload.length(), out);
+                if (out.length() > 0) {
+                    out.setLength(out.length() - 1);
+                }
+            } else if (payload.isEmpty()) {
+                // "".split(" ") yields one empty coordinate
+                out.append('?');
+            } else {
+                codec.decodeTokens(payload, 0, payload.length(), out, true);
+            }
+            output[record] = out.toString();
+        }
+    }
+
+    /**
+     * Waits for every task. Joining also makes everything the tasks wrote visible to the caller.
+     */
+    private static void joinAll(List<CompletableFuture<Void>> tasks) {
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    /**
+     * One payload and the id of the key it is encrypted under.
+     */
+    public static final class Record {
+        private final String keyId;
+        private final String payload;
+
+        public Record(String keyId, String payload) {
+            this.keyId = Objects.requireNonNull(keyId, "keyId");
+            this.payload = Objects.requireNonNull(payload, "payload");
+        }
+
+        public String getKeyId() {
+            return keyId;
+        }
+
+        public String getPayload() {
+            return payload;
+        }
+    }
+
+    /**
+     * Outputs of a batch, in the order of its records, and its statistics.
+     */
+    public static final class Result {
+        private final List<String> outputs;
+        private final Stats stats;
+
+        Result(List<String> outputs, Stats stats) {
+            this.outputs = outputs;
+            this.stats = stats;
+        }
+
+        public List<String> getOutputs() {
+            return outputs;
+        }
+
+        public Stats getStats() {
+            return stats;
+        }
+    }
+
+    /**
+     * Counts and timings of one batch. Key time is the time spent fetching schedules, summed over threads;
+     * a schedule already in the cache costs next to nothing.
+     */
+    public static final class Stats {
+        private final int records;
+        private final int keyIds;
+        private final int keys;
+        private final long keyNanos;
+        private final long totalNanos;
+
+        Stats(int records, int keyIds, int keys, long keyNanos, long totalNanos) {
+            this.records = records;
+            this.keyIds = keyIds;
+            this.keys = keys;
+            this.keyNanos = keyNanos;
+            this.totalNanos = totalNanos;
+        }
+
+        public int getRecords() {
+            return records;
+        }
+
+        /**
+         * Number of distinct key ids in the batch.
+         */
+        public int getKeyIds() {
+            return keyIds;
+        }
+
+        /**
+         * Number of distinct raw keys in the batch, i.e. of schedules fetched.
+         */
+        public int getKeys() {
+            return keys;
+        }
+
+        public long getKeyNanos() {
+            return keyNanos;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public double getRecordsPerSecond() {
+            return totalNanos == 0 ? 0 : records * 1e9 / totalNanos;
+        }
+
+        /**
+         * Key time spread over the records that shared it.
+         */
+        public double getAmortisedKeyNanosPerRecord() {
+            return records == 0 ? 0 : (double) keyNanos / records;
+        }
+
+        @Override
+        public String toString() {
+            return "records=" + records + ", keyIds=" + keyIds + ", keys=" + keys + ", keyTime=" + keyNanos
+                    + "ns, total=" + totalNanos + "ns, " + Math.round(getRecordsPerSecond()) + " records/s, "
+                    + String.format("%.1f", getAmortisedKeyNanosPerRecord()) + "ns key time/record";
+        }
+    }
+}
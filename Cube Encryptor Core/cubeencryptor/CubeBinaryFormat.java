@@ -0,0 +1,158 @@
+package cubeencryptor;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Compact ciphertext with one byte per symbol instead of five characters.
+ *
+ * Each byte holds the face code {@code cube * 6 + face}, so coordinate "01L1" is 0 and "16R2" is 95.
+ * Characters that are not on any cube (the "??" coordinate) and malformed coordinates are stored as
+ * {@link #UNKNOWN}. Schedules with more than 42 cubes do not fit in a byte and are rejected.
+ */
+public final class CubeBinaryFormat {
+    public static final int UNKNOWN = 0xFF;
+    /** Largest number of faces a schedule may have to be stored in this format. */
+    public static final int MAX_FACES = UNKNOWN / CubeCodec.CUBE_SIZE * CubeCodec.CUBE_SIZE;
+
+    // byte value -> textual coordinate
+    private static final char[][] COORDINATES = new char[256][];
+
+    static {
+        for (int code = 0; code < COORDINATES.length; code++) {
+            COORDINATES[code] = code < MAX_FACES ? CubeCodec.coordinate(code).toCharArray() : new char[] {'?', '?'};
+        }
+    }
+
+    private CubeBinaryFormat() {
+    }
+
+    /**
+     * Encrypts the text to one byte per symbol: per char for the legacy alphabet, per code point otherwise.
+     */
+    public static byte[] encrypt(CubeCodec codec, CharSequence text) {
+        checkFits(codec);
+        long start = CubeMetrics.start();
+        byte[] encrypted = encode(codec, text);
+        CubeMetrics.record(CubeMetrics.Operation.ENCRYPT, start, text.length());
+        return encrypted;
+    }
+
+    /**
+     * Maps every symbol to its code without checking the schedule size or recording metrics.
+     */
+    static byte[] encode(CubeCodec codec, CharSequence text) {
+        byte[] encrypted;
+        if (!codec.isCodePointMode()) {
+            encrypted = new byte[text.length()];
+            for (int i = 0; i < encrypted.length; i++) {
+                int code = codec.codeOf(text.charAt(i));
+                encrypted[i] = (byte) (code < 0 ? UNKNOWN : code);
+            }
+        } else {
+            encrypted = new byte[Character.codePointCount(text, 0, text.length())];
+            for (int i = 0, offset = 0; i < encrypted.length; i++) {
+                int symbol = Character.codePointAt(text, offset);
+                offset += Character.charCount(symbol);
+                int code = codec.codeOf(symbol);
+                encrypted[i] = (byte) (code < 0 ? UNKNOWN : code);
+            }
+        }
+        return encrypted;
+    }
+
+    /**
+     * Decrypts binary ciphertext. Unknown or out-of-range codes decode to '?'.
+     */
+    public static String decrypt(CubeCodec codec, byte[] encrypted) {
+        return decrypt(codec, encrypted, 0, encrypted.length);
+    }
+
+    public static String decrypt(CubeCodec codec, byte[] encrypted, int offset, int length) {
+        checkFits(codec);
+        long start = CubeMetrics.start();
+        int faces = codec.getCubeCount() * CubeCodec.CUBE_SIZE;
+        String decrypted;
+        if (!codec.isCodePointMode()) {
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                int code = encrypted[offset + i] & 0xFF;
+                chars[i] = code < faces ? (char) codec.symbolAt(code) : '?';
+            }
+            decrypted = new String(chars);
+        } else {
+            StringBuilder codePoints = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                int code = encrypted[offset + i] & 0xFF;
+                codePoints.appendCodePoint(code < faces ? codec.symbolAt(code) : '?');
+            }
+            decrypted = codePoints.toString();
+        }
+        CubeMetrics.record(CubeMetrics.Operation.DECRYPT, start, length);
+        return decrypted;
+    }
+
+    /**
+     * Encrypts to Base64-armoured binary ciphertext for text channels.
+     */
+    public static String encryptArmored(CubeCodec codec, CharSequence text) {
+        return Base64.getEncoder().encodeToString(encrypt(codec, text));
+    }
+
+    public static String decryptArmored(CubeCodec codec, String armored) {
+        return decrypt(codec, Base64.getDecoder().decode(armored));
+    }
+
+    /**
+     * Converts textual ciphertext ("01L1 05C2 ...") to binary. No key is needed. Coordinates are split as
+     * decrypt does, so the binary form decrypts to the same text; the one exception is empty ciphertext,
+     * which is the encryption of empty text and converts to no bytes.
+     */
+    public static byte[] fromText(CharSequence ciphertext) {
+        int length = ciphertext.length();
+        // Trailing empty coordinates are dropped.
+        while (length > 0 && ciphertext.charAt(length - 1) == ' ') {
+            length--;
+        }
+        if (length == 0) {
+            return new byte[0];
+        }
+        byte[] binary = new byte[length / 5 + 1];
+        int count = 0;
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i < length && ciphertext.charAt(i) != ' ') {
+                continue;
+            }
+            int code = i - start == 4 ? CubeCodec.parseCoordinate(ciphertext.charAt(start),
+                    ciphertext.charAt(start + 1), ciphertext.charAt(start + 2), ciphertext.charAt(start + 3)) : -1;
+            if (count == binary.length) {
+                binary = Arrays.copyOf(binary, binary.length * 2);
+            }
+            binary[count++] = (byte) (code < 0 || code >= MAX_FACES ? UNKNOWN : code);
+            start = i + 1;
+        }
+        return count == binary.length ? binary : Arrays.copyOf(binary, count);
+    }
+
+    /**
+     * Converts binary ciphertext back to the textual form.
+     */
+    public static String toText(byte[] binary) {
+        StringBuilder text = new StringBuilder(binary.length * 5);
+        for (byte b : binary) {
+            text.append(COORDINATES[b & 0xFF]).append(' ');
+        }
+        if (text.length() > 0) {
+            text.setLength(text.length() - 1);
+        }
+        return text.toString();
+    }
+
+    private static void checkFits(CubeCodec codec) {
+        if (codec.getCubeCount() * CubeCodec.CUBE_SIZE > MAX_FACES) {
+            throw new IllegalArgumentException("Schedule has " + codec.getCubeCount()
+                    + " cubes; the binary format holds at most " + MAX_FACES / CubeCodec.CUBE_SIZE);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package cubeencryptor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Bulk encryption of UTF-8 byte input, for callers that already hold bytes (files, sockets) and want bytes back.
+ *
+ * ASCII input never goes through a String. For textual output one 64-bit load tells whether eight input bytes
+ * are all ASCII, and every coordinate including its separator is then written with a single unaligned 64-bit
+ * store from a table of pre-packed words. Binary output is a tight loop over a 128-entry code table. Runs of
+ * non-ASCII bytes are decoded and looked up per character. The output is byte-for-byte the same as
+ * {@link CubeCodec#encrypt(CharSequence)} and {@link CubeBinaryFormat#encrypt(CubeCodec, CharSequence)} on the
+ * decoded text.
+ *
+ * When the JVM runs with {@code --add-modules jdk.incubator.vector} on a machine with vector units of at least
+ * 128 bits, whole vectors of ASCII input go through {@code VectorAsciiKernel} first, which looks bytes up with
+ * vector shuffles. The chunks it cannot take, and all input anywhere else, go through the 64-bit scalar loops
+ * above; {@link #isVectorized()} tells which applies.
+ *
+ * Text output is sized for a coordinate and separator per input byte, so {@link #encryptText(byte[], int, int)}
+ * takes inputs of up to a few hundred megabytes; larger inputs go through {@link CubeFileCipher} or
+ * {@link CubeStreams}.
+ */
+public final class CubeBulkEncoder {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long NON_ASCII_MASK = 0x8080808080808080L;
+    // Bytes past the end of the output that a 64-bit store may scribble on
+    private static final int SLACK = Long.BYTES;
+    // Longest array the VM reliably allocates
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    private static final boolean VECTOR_API = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private final CubeCodec codec;
+    // ASCII byte -> code, or CubeBinaryFormat.UNKNOWN
+    private final byte[] codes = new byte[128];
+    // ASCII byte -> coordinate and separator packed little-endian, e.g. "01L1 "
+    private final long[] tokenWords = new long[128];
+    // ASCII byte -> length of that coordinate including the separator
+    private final byte[] tokenLengths = new byte[128];
+    private final int maxTokenLength;
+    // Vector loop over whole ASCII chunks, or null
+    private final AsciiKernel kernel;
+
+    /**
+     * Encodes with the Vector API when it is available.
+     */
+    public CubeBulkEncoder(CubeCodec codec) {
+        this(codec, true);
+    }
+
+    /**
+     * @param useVectorApi false to always use the scalar loops, e.g. to compare them with the vector ones
+     */
+    public CubeBulkEncoder(CubeCodec codec, boolean useVectorApi) {
+        if (codec.getCoordinateLength() + 1 > Long.BYTES) {
+            throw new IllegalArgumentException("Coordinates of " + codec.getCubeCount() + " cubes do not fit in a word");
+        }
+        this.codec = codec;
+        this.maxTokenLength = codec.getCoordinateLength() + 1;
+        StringBuilder token = new StringBuilder(maxTokenLength);
+        for (int b = 0; b < 128; b++) {
+            int code = codec.codeOf(b);
+            codes[b] = (byte) (code < 0 ? CubeBinaryFormat.UNKNOWN : code);
+            token.setLength(0);
+            codec.encode(String.valueOf((char) b), 0, 1, token);
+            long word = 0;
+            for (int i = token.length() - 1; i >= 0; i--) {
+                word = (word << 8) | token.charAt(i);
+            }
+            tokenWords[b] = word;
+            tokenLengths[b] = (byte) token.length();
+        }
+        this.kernel = useVectorApi && VECTOR_API ? vectorKernel(codes, tokenWords, maxTokenLength) : null;
+    }
+
+    /**
+     * Looks the vector loop up by name, since it is compiled against a module the rest of the library does not
+     * need. Returns null if it was not built into this library or the machine has no wide enough vector unit.
+     */
+    private static AsciiKernel vectorKernel(byte[] codes, long[] tokenWords, int tokenLength) {
+        Class<?> kernelClass;
+        try {
+            kernelClass = Class.forName("cubeencryptor.VectorAsciiKernel");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        try {
+            return (AsciiKernel) kernelClass.getDeclaredMethod("create", byte[].class, long[].class, int.class)
+                    .invoke(null, codes, tokenWords, tokenLength);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create the vector loop", e);
+        }
+    }
+
+    /**
+     * Returns true if this JVM has the incubating Vector API, i.e. it was started with
+     * {@code --add-modules jdk.incubator.vector}.
+     */
+    public static boolean isVectorApiAvailable() {
+        return VECTOR_API;
+    }
+
+    /**
+     * Returns true if this encoder runs ASCII input through the Vector API.
+     */
+    public boolean isVectorized() {
+        return kernel != null;
+    }
+
+    public CubeCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Encrypts UTF-8 text to textual ciphertext in US-ASCII: the bytes of {@link CubeCodec#encrypt(CharSequence)}.
+     *
+     * @throws IllegalArgumentException if the ciphertext of {@code length} bytes might not fit in one array
+     */
+    public byte[] encryptText(byte[] utf8, int offset, int length) {
+        // Every input byte yields at most one coordinate and separator, plus room for the last wide store
+        long capacity = (long) length * maxTokenLength + SLACK;
+        if (capacity > MAX_ARRAY_LENGTH) {
+            throw new IllegalArgumentException("Input of " + length + " bytes is too large to encrypt into one array;"
+                    + " at most " + (MAX_ARRAY_LENGTH - SLACK) / maxTokenLength + " bytes fit");
+        }
+        long start = CubeMetrics.start();
+        byte[] out = new byte[(int) capacity];
+        int end = offset + length;
+        int pos = 0;
+        int i = offset;
+        while (i < end) {
+            if (kernel != null) {
+                int next = kernel.encodeText(utf8, i, end, out, pos);
+                pos += (next - i) * maxTokenLength;
+                i = next;
+            }
+            // The chunk the vector loop turned down, or all of the input without it
+            int stop = kernel == null ? end : Math.min(end, i + kernel.chunkLength());
+            while (i < stop) {
+                if (i + Long.BYTES <= stop && ((long) LONGS.get(utf8, i) & NON_ASCII_MASK) == 0) {
+                    for (int k = 0; k < Long.BYTES; k++) {
+                        int b = utf8[i + k];
+                        LONGS.set(out, pos, tokenWords[b]);
+                        pos += tokenLengths[b];
+                    }
+                    i += Long.BYTES;
+                } else if (utf8[i] >= 0) {
+                    int b = utf8[i++];
+                    LONGS.set(out, pos, tokenWords[b]);
+                    pos += tokenLengths[b];
+                } else {
+                    int runEnd = nonAsciiRunEnd(utf8, i, end);
+                    StringBuilder tokens = new StringBuilder((runEnd - i) * maxTokenLength);
+                    String run = new String(utf8, i, runEnd - i, StandardCharsets.UTF_8);
+                    codec.encode(run, 0, run.length(), tokens);
+                    for (int k = 0; k < tokens.length(); k++) {
+                        out[pos++] = (byte) tokens.charAt(k);
+                    }
+                    i = runEnd;
+                }
+            }
+        }
+        // No separator after the last coordinate
+        byte[] encrypted = Arrays.copyOf(out, Math.max(0, pos - 1));
+        CubeMetrics.record(CubeMetrics.Operation.ENCRYPT, start, length);
+        return encrypted;
+    }
+
+    /**
+     * Encrypts UTF-8 text to binary ciphertext: the result of {@link CubeBinaryFormat#encrypt(CubeCodec, CharSequence)}.
+     */
+    public byte[] encryptBinary(byte[] utf8, int offset, int length) {
+        if (codec.getCubeCount() * CubeCodec.CUBE_SIZE > CubeBinaryFormat.MAX_FACES) {
+            throw new IllegalArgumentException("Schedule has " + codec.getCubeCount()
+                    + " cubes; the binary format holds at most " + CubeBinaryFormat.MAX_FACES / CubeCodec.CUBE_SIZE);
+        }
+        long start = CubeMetrics.start();
+        // One byte per character, and a decoded character never takes fewer bytes than it had in UTF-8
+        byte[] out = new byte[length];
+        int end = offset + length;
+        int pos = 0;
+        int i = offset;
+        while (i < end) {
+            if (kernel != null) {
+                int next = kernel.encodeBinary(utf8, i, end, out, pos);
+                pos += next - i;
+                i = next;
+            }
+            // ASCII prefix in one tight loop the JIT can unroll; the table index is never negative here
+            int asciiEnd = i;
+            while (asciiEnd < end && utf8[asciiEnd] >= 0) {
+                asciiEnd++;
+            }
+            for (; i < asciiEnd; i++) {
+                out[pos++] = codes[utf8[i]];
+            }
+            if (i < end) {
+                int runEnd = nonAsciiRunEnd(utf8, i, end);
+                byte[] run = CubeBinaryFormat.encode(codec, new String(utf8, i, runEnd - i, StandardCharsets.UTF_8));
+                System.arraycopy(run, 0, out, pos, run.length);
+                pos += run.length;
+                i = runEnd;
+            }
+        }
+        byte[] encrypted = pos == out.length ? out : Arrays.copyOf(out, pos);
+        CubeMetrics.record(CubeMetrics.Operation.ENCRYPT, start, length);
+        return encrypted;
+    }
+
+    /**
+     * Returns the end of the run of non-ASCII bytes starting at {@code from}. UTF-8 continuation bytes are never
+     * ASCII, so the run holds whole (or whole malformed) sequences and decodes the same on its own.
+     */
+    private static int nonAsciiRunEnd(byte[] utf8, int from, int to) {
+        int i = from;
+        while (i < to && utf8[i] < 0) {
+            i++;
+        }
+        return i;
+    }
+}
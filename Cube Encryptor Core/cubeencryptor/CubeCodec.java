@@ -0,0 +1,535 @@
+package cubeencryptor;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable lookup tables for one cube schedule.
+ *
+ * The schedule key is split into cubes of six faces exactly as {@link KeySchedule#splitIntoCubes(String)} does,
+ * and every face gets a code of {@code cube * 6 + face}. Encoding a character and decoding a cube code
+ * are then single array or hash lookups instead of a scan over every cube.
+ *
+ * Schedules built for {@link CubeAlphabet#PRINTABLE_ASCII} work char by char, like the original cipher.
+ * Schedules for any other alphabet work on code points, so a supplementary character is one symbol.
+ * The cube number is two digits wide, or wider once a schedule has more than 99 cubes. Every coordinate such a
+ * schedule writes has the wider number, so its first cube is "001L1". The original cipher wrote "01L1" there and
+ * "100L1" from cube 100 on, and read back only the two digit ones; legacy schedules therefore still read two
+ * digit coordinates of cubes 1 to 99, so ciphertext the original could decrypt keeps decrypting.
+ */
+public final class CubeCodec {
+    public static final int CUBE_SIZE = 6;
+    /** Character used to pad the last cube when the key length is not a multiple of six. */
+    public static final char PAD = ' ';
+    /** Face labels by face index: 0 = L1, 1 = C1, 2 = C2, 3 = C3, 4 = R1, 5 = R2. */
+    private static final String[] FACE_LABELS = {"L1", "C1", "C2", "C3", "R1", "R2"};
+    private static final char[] UNKNOWN_TOKEN = {'?', '?'};
+    // Code points below this are looked up in a plain array, the rest in a hash map
+    private static final int DENSE_LIMIT = 256;
+    // Coordinates of every code in schedules of at most 99 cubes, shared by all of them
+    private static final char[][] TWO_DIGIT_TOKENS = new char[99 * CUBE_SIZE][];
+
+    static {
+        for (int code = 0; code < TWO_DIGIT_TOKENS.length; code++) {
+            TWO_DIGIT_TOKENS[code] = coordinateChars(code, 2);
+        }
+    }
+
+    private final String key;
+    private final boolean codePoints;
+    private final int cubeCount;
+    // Digits in the cube number of every coordinate
+    private final int numberWidth;
+    // Wide legacy schedules also read the original's two digit coordinates
+    private final boolean readsTwoDigits;
+    // code -> symbol (a char in legacy mode, a code point otherwise)
+    private final int[] symbols;
+    // symbol -> code for symbols below DENSE_LIMIT, -1 when the symbol is not on any cube
+    private final int[] denseCodes;
+    // symbol -> code for all other symbols, null if there are none
+    private final IntIntMap sparseCodes;
+    // code -> cube coordinate, e.g. "01L1"
+    private final char[][] tokens;
+    // "??" padded with '?' to the coordinate length, for the fixed-width layout
+    private final char[] alignedUnknownToken;
+    // Computed on first use; racing threads compute the same string
+    private String keyFingerprint;
+
+    /**
+     * Builds the tables for the given schedule key (normally the output of {@link KeySchedule#sanitize(String)}).
+     */
+    public CubeCodec(String key) {
+        this(key, CubeAlphabet.PRINTABLE_ASCII);
+    }
+
+    /**
+     * Builds the tables for a schedule key sanitized for the given alphabet. Any alphabet other than
+     * {@link CubeAlphabet#PRINTABLE_ASCII} reads the key and the text as code points.
+     */
+    public CubeCodec(String key, CubeAlphabet alphabet) {
+        this(key, !alphabet.isLegacy(), faceSymbols(key, !alphabet.isLegacy()));
+    }
+
+    /**
+     * Builds the tables from the symbol on every face, the last cube padded with {@link #PAD}, such as the ones a
+     * {@link KeyScheduleStore} holds. The array is taken over, not copied.
+     */
+    CubeCodec(String key, boolean codePoints, int[] symbols) {
+        this.key = key;
+        this.codePoints = codePoints;
+        this.cubeCount = symbols.length / CUBE_SIZE;
+        this.numberWidth = Math.max(2, Integer.toString(cubeCount).length());
+        this.readsTwoDigits = !codePoints && numberWidth > 2;
+        this.symbols = symbols;
+        this.denseCodes = denseCodes(symbols);
+        this.sparseCodes = sparseCodes(symbols);
+        if (numberWidth == 2) {
+            this.tokens = TWO_DIGIT_TOKENS;
+            this.alignedUnknownToken = UNKNOWN_TOKEN;
+        } else {
+            this.tokens = new char[symbols.length][];
+            for (int code = 0; code < symbols.length; code++) {
+                tokens[code] = coordinateChars(code, numberWidth);
+            }
+            this.alignedUnknownToken = new char[numberWidth + 2];
+            Arrays.fill(alignedUnknownToken, '?');
+        }
+    }
+
+    /**
+     * The symbol on every face of the key's cubes, with the last cube padded.
+     */
+    private static int[] faceSymbols(String key, boolean codePoints) {
+        int length = codePoints ? key.codePointCount(0, key.length()) : key.length();
+        int[] symbols = new int[(length + CUBE_SIZE - 1) / CUBE_SIZE * CUBE_SIZE];
+        for (int i = 0, offset = 0; i < symbols.length; i++) {
+            if (offset < key.length()) {
+                int symbol = codePoints ? key.codePointAt(offset) : key.charAt(offset);
+                symbols[i] = symbol;
+                offset += codePoints ? Character.charCount(symbol) : 1;
+            } else {
+                symbols[i] = PAD;
+            }
+        }
+        return symbols;
+    }
+
+    private static int[] denseCodes(int[] symbols) {
+        int[] codes = new int[DENSE_LIMIT];
+        Arrays.fill(codes, -1);
+        // The first face holding a symbol wins, matching the cube-by-cube scan order.
+        for (int code = 0; code < symbols.length; code++) {
+            int symbol = symbols[code];
+            if (symbol < DENSE_LIMIT && codes[symbol] < 0) {
+                codes[symbol] = code;
+            }
+        }
+        return codes;
+    }
+
+    private static IntIntMap sparseCodes(int[] symbols) {
+        IntIntMap codes = null;
+        for (int code = 0; code < symbols.length; code++) {
+            int symbol = symbols[code];
+            if (symbol >= DENSE_LIMIT) {
+                if (codes == null) {
+                    codes = new IntIntMap(symbols.length);
+                }
+                codes.putIfAbsent(symbol, code);
+            }
+        }
+        return codes;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public int getCubeCount() {
+        return cubeCount;
+    }
+
+    /**
+     * Returns true if text is read as code points rather than chars.
+     */
+    public boolean isCodePointMode() {
+        return codePoints;
+    }
+
+    /**
+     * Length of every valid coordinate in this schedule: the cube number plus the two character face label.
+     */
+    public int getCoordinateLength() {
+        return numberWidth + 2;
+    }
+
+    /**
+     * Salted fingerprint of the schedule key, as recorded in {@link CubeEvents}; never the key itself.
+     */
+    public String getKeyFingerprint() {
+        String fingerprint = keyFingerprint;
+        if (fingerprint == null) {
+            fingerprint = CubeEvents.fingerprint(key);
+            keyFingerprint = fingerprint;
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Returns the code ({@code cube * 6 + face}) of the given symbol, or -1 if it is not on any cube.
+     * In legacy mode the symbol is a char value.
+     */
+    public int codeOf(int symbol) {
+        if (symbol < DENSE_LIMIT) {
+            return symbol < 0 ? -1 : denseCodes[symbol];
+        }
+        return sparseCodes == null ? -1 : sparseCodes.get(symbol);
+    }
+
+    /**
+     * Returns the symbol on the face with the given code: a char value in legacy mode, a code point otherwise.
+     */
+    public int symbolAt(int code) {
+        return symbols[code];
+    }
+
+    /**
+     * Returns the coordinate of a code, e.g. "01L1". The array is shared and must not be modified.
+     */
+    char[] tokenAt(int code) {
+        return tokens[code];
+    }
+
+    /**
+     * Moves a chunk boundary forward by one if it would split a surrogate pair, so that chunks can be
+     * encoded independently in code point mode.
+     */
+    public static int alignToCodePoint(CharSequence text, int index) {
+        if (index > 0 && index < text.length() && Character.isHighSurrogate(text.charAt(index - 1))
+                && Character.isLowSurrogate(text.charAt(index))) {
+            return index + 1;
+        }
+        return index;
+    }
+
+    /**
+     * Appends the cube coordinate of every symbol in {@code text[from, to)} to {@code out},
+     * each followed by a single space. Symbols that are not on any cube become "??".
+     */
+    public void encode(CharSequence text, int from, int to, StringBuilder out) {
+        if (!codePoints) {
+            for (int i = from; i < to; i++) {
+                int code = codeOf(text.charAt(i));
+                out.append(code < 0 ? UNKNOWN_TOKEN : tokens[code]).append(' ');
+            }
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            int symbol = text.charAt(i);
+            if (Character.isHighSurrogate((char) symbol) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) {
+                symbol = Character.toCodePoint((char) symbol, text.charAt(++i));
+            }
+            int code = codeOf(symbol);
+            out.append(code < 0 ? UNKNOWN_TOKEN : tokens[code]).append(' ');
+        }
+    }
+
+    /**
+     * Like {@link #encode(CharSequence, int, int, StringBuilder)}, but char by char and with every coordinate
+     * exactly {@link #getCoordinateLength()} long: unknown characters become a run of '?' of that length, which
+     * still decrypts to '?'. The coordinate of character {@code i} then always starts at
+     * {@code i * (getCoordinateLength() + 1)}, so a span of the ciphertext can be patched in place.
+     */
+    public void encodeAligned(CharSequence text, int from, int to, StringBuilder out) {
+        for (int i = from; i < to; i++) {
+            int code = codeOf(text.charAt(i));
+            out.append(code < 0 ? alignedUnknownToken : tokens[code]).append(' ');
+        }
+    }
+
+    /**
+     * Encrypts the whole text. Produces the same output as the original coordinate-scan implementation:
+     * space separated coordinates with no trailing space.
+     */
+    public String encrypt(CharSequence text) {
+        long start = CubeMetrics.start();
+        CubeEvents.Encrypt event = new CubeEvents.Encrypt();
+        event.begin();
+        StringBuilder out = new StringBuilder(text.length() * 5);
+        encode(text, 0, text.length(), out);
+        if (out.length() > 0) {
+            out.setLength(out.length() - 1);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.keyFingerprint = getKeyFingerprint();
+            event.inputLength = text.length();
+            event.outputLength = out.length();
+            event.commit();
+        }
+        CubeMetrics.record(CubeMetrics.Operation.ENCRYPT, start, text.length());
+        return out.toString();
+    }
+
+    /**
+     * Decrypts the whole ciphertext with the same result as splitting it on single spaces and decoding
+     * every coordinate.
+     */
+    public String decrypt(CharSequence encryptedText) {
+        return decrypt(encryptedText, null);
+    }
+
+    /**
+     * Decrypts the whole ciphertext, passing the offset of every malformed or empty coordinate to
+     * {@code badTokens} (if not null). Those coordinates still decode to '?'.
+     */
+    public String decrypt(CharSequence encryptedText, IntConsumer badTokens) {
+        long start = CubeMetrics.start();
+        CubeEvents.Decrypt event = new CubeEvents.Decrypt();
+        event.begin();
+        int length = encryptedText.length();
+        StringBuilder out = new StringBuilder(length / 5 + 1);
+        if (length == 0) {
+            // "".split(" ") yields one empty coordinate
+            if (badTokens != null) {
+                badTokens.accept(0);
+            }
+            out.append('?');
+        } else {
+            decodeTokens(encryptedText, 0, length, out, true, badTokens);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.keyFingerprint = getKeyFingerprint();
+            event.inputLength = length;
+            event.outputLength = out.length();
+            event.commit();
+        }
+        CubeMetrics.record(CubeMetrics.Operation.DECRYPT, start, length);
+        return out.toString();
+    }
+
+    /**
+     * Decodes the space separated coordinates in {@code text[from, to)} and appends the characters to {@code out}.
+     * Empty coordinates decode to '?', except that trailing ones are dropped when {@code endOfText} is set,
+     * matching String.split(" ").
+     */
+    public void decodeTokens(CharSequence text, int from, int to, StringBuilder out, boolean endOfText) {
+        decodeTokens(text, from, to, out, endOfText, null);
+    }
+
+    /**
+     * Same as {@link #decodeTokens(CharSequence, int, int, StringBuilder, boolean)}, additionally passing the
+     * offset of every malformed or empty coordinate that is emitted as '?' to {@code badTokens} (if not null).
+     * Scans the text in place without creating any intermediate objects.
+     */
+    public void decodeTokens(CharSequence text, int from, int to, StringBuilder out, boolean endOfText,
+            IntConsumer badTokens) {
+        int pendingEmpty = 0;
+        int start = from;
+        for (int i = from; i <= to; i++) {
+            if (i < to && text.charAt(i) != ' ') {
+                continue;
+            }
+            if (i == start) {
+                pendingEmpty++;
+            } else {
+                flushEmpty(start - pendingEmpty, pendingEmpty, out, badTokens);
+                pendingEmpty = 0;
+                int code = codeAt(text, start, i);
+                appendDecoded(code, start, out, badTokens);
+            }
+            start = i + 1;
+        }
+        if (!endOfText) {
+            flushEmpty(to + 1 - pendingEmpty, pendingEmpty, out, badTokens);
+        }
+    }
+
+    /**
+     * Decodes coordinates held as ASCII bytes in {@code text[from, to)}, with the same rules as
+     * {@link #decodeTokens(CharSequence, int, int, StringBuilder, boolean, IntConsumer)}. Offsets are byte
+     * offsets. Only ASCII digits are accepted in the cube number.
+     */
+    public void decodeTokens(byte[] text, int from, int to, StringBuilder out, boolean endOfText,
+            IntConsumer badTokens) {
+        int pendingEmpty = 0;
+        int start = from;
+        for (int i = from; i <= to; i++) {
+            if (i < to && text[i] != ' ') {
+                continue;
+            }
+            if (i == start) {
+                pendingEmpty++;
+            } else {
+                flushEmpty(start - pendingEmpty, pendingEmpty, out, badTokens);
+                pendingEmpty = 0;
+                int code = codeAt(text, start, i);
+                appendDecoded(code, start, out, badTokens);
+            }
+            start = i + 1;
+        }
+        if (!endOfText) {
+            flushEmpty(to + 1 - pendingEmpty, pendingEmpty, out, badTokens);
+        }
+    }
+
+    private static void flushEmpty(int firstOffset, int count, StringBuilder out, IntConsumer badTokens) {
+        for (int k = 0; k < count; k++) {
+            out.append('?');
+            if (badTokens != null) {
+                badTokens.accept(firstOffset + k);
+            }
+        }
+    }
+
+    private void appendDecoded(int code, int offset, StringBuilder out, IntConsumer badTokens) {
+        if (code >= 0) {
+            appendSymbol(symbols[code], out);
+        } else {
+            out.append('?');
+            if (badTokens != null) {
+                badTokens.accept(offset);
+            }
+        }
+    }
+
+    private void appendSymbol(int symbol, StringBuilder out) {
+        if (codePoints) {
+            out.appendCodePoint(symbol);
+        } else {
+            out.append((char) symbol);
+        }
+    }
+
+    /**
+     * Decodes a single cube coordinate held in {@code token[from, to)}, returning the symbol (see
+     * {@link #symbolAt(int)}), or '?' if the coordinate is malformed or points outside the schedule.
+     */
+    public int decode(CharSequence token, int from, int to) {
+        int code = codeAt(token, from, to);
+        return code < 0 ? '?' : symbols[code];
+    }
+
+    /**
+     * Returns the code of the coordinate in {@code text[from, to)}, or -1 if it is malformed or outside the schedule.
+     */
+    private int codeAt(CharSequence text, int from, int to) {
+        if (!hasCoordinateLength(to - from)) {
+            return -1;
+        }
+        int cubeNumber = parseCubeNumber(text.charAt(from), text, from + 1, to - 2);
+        int face = faceIndex(text.charAt(to - 2), text.charAt(to - 1));
+        return toCode(cubeNumber, face);
+    }
+
+    /**
+     * Same as {@link #codeAt(CharSequence, int, int)} for ASCII bytes. Only ASCII digits are accepted.
+     */
+    private int codeAt(byte[] text, int from, int to) {
+        if (!hasCoordinateLength(to - from)) {
+            return -1;
+        }
+        int cubeNumber = text[from] == '+' ? 0 : asciiDigit(text[from]);
+        for (int i = from + 1; i < to - 2 && cubeNumber >= 0; i++) {
+            int digit = asciiDigit(text[i]);
+            cubeNumber = digit < 0 ? -1 : cubeNumber * 10 + digit;
+        }
+        int face = faceIndex((char) (text[to - 2] & 0xff), (char) (text[to - 1] & 0xff));
+        return toCode(cubeNumber, face);
+    }
+
+    private boolean hasCoordinateLength(int length) {
+        return length == numberWidth + 2 || readsTwoDigits && length == 4;
+    }
+
+    private int toCode(int cubeNumber, int face) {
+        if (cubeNumber < 1 || face < 0) {
+            return -1;
+        }
+        int code = (cubeNumber - 1) * CUBE_SIZE + face;
+        return code < symbols.length ? code : -1;
+    }
+
+    private static int asciiDigit(byte b) {
+        return b >= '0' && b <= '9' ? b - '0' : -1;
+    }
+
+    /**
+     * Returns the code of a four character coordinate in any schedule of at most 99 cubes, or -1 if it is malformed.
+     */
+    static int parseCoordinate(char c0, char c1, char c2, char c3) {
+        int cubeNumber = parseCubeNumber(c0, c1);
+        int face = faceIndex(c2, c3);
+        if (cubeNumber < 1 || face < 0) {
+            return -1;
+        }
+        return (cubeNumber - 1) * CUBE_SIZE + face;
+    }
+
+    /**
+     * Formats a code as its two digit coordinate, e.g. 0 as "01L1".
+     */
+    static String coordinate(int code) {
+        return new String(coordinateChars(code, 2));
+    }
+
+    /**
+     * Formats a code as its coordinate with a zero padded cube number of the given width.
+     */
+    private static char[] coordinateChars(int code, int numberWidth) {
+        char[] token = new char[numberWidth + 2];
+        int cubeNumber = code / CUBE_SIZE + 1;
+        for (int i = numberWidth - 1; i >= 0; i--) {
+            token[i] = (char) ('0' + cubeNumber % 10);
+            cubeNumber /= 10;
+        }
+        String label = FACE_LABELS[code % CUBE_SIZE];
+        token[numberWidth] = label.charAt(0);
+        token[numberWidth + 1] = label.charAt(1);
+        return token;
+    }
+
+    /**
+     * Parses a two character cube number with the same rules as Integer.parseInt, returning -1 if invalid.
+     */
+    private static int parseCubeNumber(char first, char second) {
+        int low = Character.digit(second, 10);
+        if (low < 0) {
+            return -1;
+        }
+        if (first == '+') {
+            return low;
+        }
+        int high = Character.digit(first, 10);
+        return high < 0 ? -1 : high * 10 + low;
+    }
+
+    /**
+     * Parses a cube number of any width with the same rules as Integer.parseInt: {@code first} is a digit or
+     * a leading '+', followed by the digits in {@code text[from, to)}. Returns -1 if invalid.
+     */
+    private static int parseCubeNumber(char first, CharSequence text, int from, int to) {
+        if (to - from == 1) {
+            return parseCubeNumber(first, text.charAt(from));
+        }
+        int number = first == '+' ? 0 : Character.digit(first, 10);
+        for (int i = from; i < to && number >= 0; i++) {
+            int digit = Character.digit(text.charAt(i), 10);
+            number = digit < 0 ? -1 : number * 10 + digit;
+        }
+        return number;
+    }
+
+    /**
+     * Maps a face label to its index: L1 = 0, C1 = 1, C2 = 2, C3 = 3, R1 = 4, R2 = 5, otherwise -1.
+     */
+    private static int faceIndex(char side, char row) {
+        switch (side) {
+            case 'L': return row == '1' ? 0 : -1;
+            case 'C': return row >= '1' && row <= '3' ? row - '0' : -1;
+            case 'R': return row == '1' ? 4 : row == '2' ? 5 : -1;
+            default: return -1;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package cubeencryptor;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events for key derivation and encrypt/decrypt, so latency can be attributed under
+ * continuous recording. While recording is off an event is a few field writes the JIT removes entirely.
+ *
+ * Events carry a key fingerprint, never the key: the first 64 bits of SHA-256 over a random per-process salt
+ * and the schedule key. Fingerprints tell schedules apart within one recording, but a recording alone does not
+ * allow guessing keys, and the same key fingerprints differently in another process. The fingerprint is only
+ * computed for events that pass their threshold.
+ */
+public final class CubeEvents {
+    private static final byte[] SALT = new byte[16];
+
+    static {
+        new SecureRandom().nextBytes(SALT);
+    }
+
+    private CubeEvents() {
+    }
+
+    /**
+     * Fingerprint of a key as recorded in the events, e.g. "3f9a0c1d22e4b5a7".
+     */
+    public static String fingerprint(String key) {
+        MessageDigest sha = KeyDigests.sha256();
+        sha.update(SALT);
+        byte[] digest = sha.digest(KeyDigests.keyBytes(key));
+        StringBuilder hex = new StringBuilder(16);
+        for (int i = 0; i < 8; i++) {
+            hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    @Name("cubeencryptor.SanitizeKey")
+    @Label("Sanitize Key")
+    @Category("Cube Encryptor")
+    @Description("Removing duplicate symbols from a raw key and appending the rest of the alphabet")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    public static final class SanitizeKey extends Event {
+        @Label("Key Fingerprint")
+        @Description("Fingerprint of the sanitized key")
+        public String keyFingerprint;
+
+        @Label("Raw Key Length")
+        public int keyLength;
+
+        @Label("Alphabet Size")
+        public int alphabetSize;
+
+        @Label("Schedule Length")
+        public int scheduleLength;
+    }
+
+    @Name("cubeencryptor.GenerateCubes")
+    @Label("Generate Cubes")
+    @Category("Cube Encryptor")
+    @Description("Splitting a sanitized key into cubes of six faces")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    public static final class GenerateCubes extends Event {
+        @Label("Key Fingerprint")
+        public String keyFingerprint;
+
+        @Label("Cubes")
+        public int cubeCount;
+    }
+
+    @Name("cubeencryptor.Encrypt")
+    @Label("Encrypt")
+    @Category("Cube Encryptor")
+    @Threshold("10 ms")
+    public static final class Encrypt extends Event {
+        @Label("Key Fingerprint")
+        public String keyFingerprint;
+
+        @Label("Input Length")
+        @Description("Plaintext length in chars")
+        public long inputLength;
+
+        @Label("Output Length")
+        @Description("Ciphertext length in chars")
+        public long outputLength;
+
+        @Label("Parallel")
+        public boolean parallel;
+    }
+
+    @Name("cubeencryptor.Decrypt")
+    @Label("Decrypt")
+    @Category("Cube Encryptor")
+    @Threshold("10 ms")
+    public static final class Decrypt extends Event {
+        @Label("Key Fingerprint")
+        public String keyFingerprint;
+
+        @Label("Input Length")
+        @Description("Ciphertext length in chars")
+        public long inputLength;
+
+        @Label("Output Length")
+        @Description("Plaintext length in chars")
+        public long outputLength;
+
+        @Label("Parallel")
+        public boolean parallel;
+    }
+}
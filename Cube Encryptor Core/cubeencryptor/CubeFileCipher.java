@@ -0,0 +1,318 @@
+package cubeencryptor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * File-to-file encryption of UTF-8 text through memory-mapped windows, for inputs of any size.
+ *
+ * The input is cut into windows at character boundaries. A first pass over every window counts how many bytes
+ * its ciphertext will take (a coordinate plus separator per symbol, shorter for unknown symbols); the window
+ * offsets in the output follow from those counts, so a second pass can encode every window straight into its
+ * own mapped region of the output file. Windows are independent, so both passes run on several threads.
+ * The output file holds exactly what {@link CubeCodec#encrypt(CharSequence)} returns for the decoded input.
+ */
+public final class CubeFileCipher {
+    /** Default input window size. */
+    public static final long DEFAULT_WINDOW_SIZE = 64L << 20;
+    private static final int STAGING_SIZE = 1 << 16;
+    private static final int CHAR_BUFFER_SIZE = 4096;
+    // A cut moves past at most three continuation bytes, so a window may be this much longer than asked for
+    private static final int BOUNDARY_SLACK = 3;
+
+    private CubeFileCipher() {
+    }
+
+    /**
+     * Encrypts {@code input} into {@code output} on the calling thread. Returns the size of the output in bytes.
+     */
+    public static long encrypt(CubeCodec codec, Path input, Path output) throws IOException {
+        return encrypt(codec, input, output, 1, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Encrypts {@code input} into {@code output}, replacing it, with up to {@code parallelism} threads each
+     * working on windows of about {@code windowSize} input bytes. Returns the size of the output in bytes.
+     * The output may not be the input file, under any name, since it is truncated before the input is read.
+     */
+    public static long encrypt(CubeCodec codec, Path input, Path output, int parallelism, long windowSize)
+            throws IOException {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive: " + windowSize);
+        }
+        if (Files.exists(output) && Files.isSameFile(input, output)) {
+            throw new IllegalArgumentException("output is the input file: " + output);
+        }
+        long start = CubeMetrics.start();
+        // A window's ciphertext, boundary slack included, must also fit in one mapping
+        int maxTokenLength = codec.getCoordinateLength() + 1;
+        windowSize = Math.min(windowSize, Integer.MAX_VALUE / maxTokenLength - BOUNDARY_SLACK);
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long inputSize = in.size();
+            long[] bounds = windowBounds(in, inputSize, windowSize);
+            int windows = bounds.length - 1;
+
+            long[] lengths = new long[windows];
+            forEachWindow(windows, parallelism, window -> {
+                lengths[window] = encodeWindow(codec, in.map(FileChannel.MapMode.READ_ONLY, bounds[window],
+                        bounds[window + 1] - bounds[window]), null);
+            });
+
+            long[] offsets = new long[windows + 1];
+            for (int window = 0; window < windows; window++) {
+                offsets[window + 1] = offsets[window] + lengths[window];
+            }
+            // No separator after the last coordinate
+            long outputSize = Math.max(0, offsets[windows] - 1);
+            forEachWindow(windows, parallelism, window -> {
+                long length = Math.min(lengths[window], outputSize - offsets[window]);
+                if (length <= 0) {
+                    return;
+                }
+                MappedByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE, offsets[window], length);
+                encodeWindow(codec, in.map(FileChannel.MapMode.READ_ONLY, bounds[window],
+                        bounds[window + 1] - bounds[window]), target);
+            });
+            CubeMetrics.record(CubeMetrics.Operation.ENCRYPT, start, inputSize);
+            return outputSize;
+        }
+    }
+
+    /**
+     * Returns window start offsets plus the input size, moving every cut forward past UTF-8 continuation bytes
+     * so no character is split between windows.
+     */
+    private static long[] windowBounds(FileChannel in, long size, long windowSize) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(BOUNDARY_SLACK);
+        long cut = windowSize;
+        while (cut < size) {
+            probe.clear();
+            in.read(probe, cut);
+            probe.flip();
+            while (probe.hasRemaining() && (probe.get() & 0xC0) == 0x80) {
+                cut++;
+            }
+            if (cut >= size) {
+                break;
+            }
+            bounds.add(cut);
+            cut += windowSize;
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Encodes one window of UTF-8 input. With a null {@code target} nothing is written and only the size of the
+     * ciphertext (every coordinate followed by a separator) is returned. Otherwise the ciphertext is written to
+     * {@code target}, dropping whatever does not fit, which is only ever the final separator of the file.
+     */
+    private static long encodeWindow(CubeCodec codec, ByteBuffer window, ByteBuffer target) {
+        Encoder encoder = new Encoder(codec, target);
+        byte[] chunk = new byte[STAGING_SIZE];
+        int chunkStart = window.position();
+        int limit = window.limit();
+        while (chunkStart < limit) {
+            int n = Math.min(chunk.length, limit - chunkStart);
+            window.get(chunkStart, chunk, 0, n);
+            int i = 0;
+            while (i < n) {
+                byte b = chunk[i];
+                if (b >= 0) {
+                    encoder.emit(codec.codeOf(b));
+                    i++;
+                    continue;
+                }
+                // Non-ASCII bytes run until the next ASCII byte; UTF-8 sequences never contain one.
+                int runEnd = i + 1;
+                while (runEnd < n && chunk[runEnd] < 0) {
+                    runEnd++;
+                }
+                if (runEnd == n && chunkStart + n < limit) {
+                    // The run may go on past this chunk; start the next chunk with it
+                    break;
+                }
+                encoder.emitDecoded(ByteBuffer.wrap(chunk, i, runEnd - i));
+                i = runEnd;
+            }
+            if (i == 0) {
+                // A run longer than a whole chunk: decode it straight from the mapping
+                int runEnd = chunkStart;
+                while (runEnd < limit && window.get(runEnd) < 0) {
+                    runEnd++;
+                }
+                encoder.emitDecoded(window.slice(chunkStart, runEnd - chunkStart));
+                i = runEnd - chunkStart;
+            }
+            chunkStart += i;
+        }
+        encoder.finish();
+        return encoder.length;
+    }
+
+    private static void forEachWindow(int windows, int parallelism, WindowTask task) throws IOException {
+        if (parallelism == 1 || windows <= 1) {
+            for (int window = 0; window < windows; window++) {
+                task.run(window);
+            }
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, windows));
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int window = 0; window < windows; window++) {
+                int w = window;
+                results.add(pool.submit(() -> {
+                    try {
+                        task.run(w);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private interface WindowTask {
+        void run(int window) throws IOException;
+    }
+
+    /**
+     * Writes (or only counts) coordinates for one window, staging them in a small heap buffer.
+     */
+    private static final class Encoder {
+        private final CubeCodec codec;
+        private final ByteBuffer target;
+        private final byte[] staging;
+        private final int maxTokenLength;
+        private int staged;
+        private long length;
+        private CharsetDecoder decoder;
+        private CharBuffer chars;
+
+        Encoder(CubeCodec codec, ByteBuffer target) {
+            this.codec = codec;
+            this.target = target;
+            this.staging = target == null ? null : new byte[STAGING_SIZE];
+            this.maxTokenLength = codec.getCoordinateLength() + 1;
+        }
+
+        void emit(int code) {
+            if (staging == null) {
+                length += code < 0 ? 3 : maxTokenLength;
+                return;
+            }
+            if (staged + maxTokenLength > staging.length) {
+                flush();
+            }
+            if (code < 0) {
+                staging[staged++] = '?';
+                staging[staged++] = '?';
+            } else {
+                char[] token = codec.tokenAt(code);
+                for (char ch : token) {
+                    staging[staged++] = (byte) ch;
+                }
+            }
+            staging[staged++] = ' ';
+        }
+
+        /**
+         * Decodes a run of non-ASCII bytes the way new String(bytes, UTF_8) would and emits its symbols.
+         */
+        void emitDecoded(ByteBuffer run) {
+            if (decoder == null) {
+                decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+            }
+            decoder.reset();
+            CoderResult result;
+            do {
+                result = decoder.decode(run, chars, true);
+                drain(false);
+            } while (result.isOverflow());
+            while (decoder.flush(chars).isOverflow()) {
+                drain(false);
+            }
+            drain(true);
+        }
+
+        /**
+         * Emits the decoded chars. In code point mode a trailing high surrogate is kept back until its pair
+         * arrives, unless this is the end of the run.
+         */
+        private void drain(boolean endOfRun) {
+            chars.flip();
+            while (chars.hasRemaining()) {
+                char ch = chars.get();
+                if (codec.isCodePointMode() && Character.isHighSurrogate(ch)) {
+                    if (!chars.hasRemaining() && !endOfRun) {
+                        chars.position(chars.position() - 1);
+                        break;
+                    }
+                    if (chars.hasRemaining() && Character.isLowSurrogate(chars.get(chars.position()))) {
+                        emit(codec.codeOf(Character.toCodePoint(ch, chars.get())));
+                        continue;
+                    }
+                }
+                emit(codec.codeOf(ch));
+            }
+            chars.compact();
+        }
+
+        void finish() {
+            if (staging != null) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            int n = Math.min(staged, target.remaining());
+            target.put(staging, 0, n);
+            length += staged;
+            staged = 0;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package cubeencryptor;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reactive-streams stage that encrypts or decrypts every message passing through it, as
+ * {@link CubeCodec#encrypt(CharSequence)} or {@link CubeCodec#decrypt(CharSequence)} would, in order.
+ *
+ * Backpressure runs both ways. Upstream is asked for at most {@code bufferSize} messages ahead, and asked for
+ * more in batches once three quarters of them have been passed on, so the buffer never holds more than
+ * {@code bufferSize} messages however bursty the producer is. Downstream only receives as many messages as it
+ * requested. Messages are encoded on the executor by a single drain task at a time, which handles up to
+ * {@code bufferSize} messages per run before handing the thread back, so a burst of small messages costs one
+ * task instead of one per message. An upstream error is passed on after the messages buffered before it.
+ * The processor has a single subscriber and is used once.
+ */
+public final class CubeFlowProcessor implements Flow.Processor<String, String> {
+    private final CubeCodec codec;
+    private final boolean encrypt;
+    private final Executor executor;
+    private final int bufferSize;
+    // Messages passed on before upstream is asked for that many more
+    private final int replenishLimit;
+
+    private final Queue<String> queue = new ConcurrentLinkedQueue<>();
+    // Number of drain requests; only the caller that raises it from 0 schedules the drain task
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong requested = new AtomicLong();
+    private volatile Flow.Subscription upstream;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private volatile Flow.Subscriber<? super String> downstream;
+    private volatile boolean done;
+    // Upstream failure, delivered once the buffered messages are through
+    private volatile Throwable error;
+    // Downstream misuse, delivered right away
+    private volatile Throwable requestError;
+    private volatile boolean cancelled;
+    // Only touched by the drain task
+    private boolean terminated;
+    private int consumed;
+
+    private CubeFlowProcessor(CubeCodec codec, boolean encrypt, Executor executor, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        }
+        this.codec = Objects.requireNonNull(codec, "codec");
+        this.encrypt = encrypt;
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.bufferSize = bufferSize;
+        this.replenishLimit = bufferSize - (bufferSize >> 2);
+    }
+
+    /**
+     * Encrypting stage on the common ForkJoinPool with {@link Flow#defaultBufferSize()}.
+     */
+    public static CubeFlowProcessor encryptor(CubeCodec codec) {
+        return encryptor(codec, ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    /**
+     * @param executor   executor the messages are encrypted on
+     * @param bufferSize most messages requested from upstream and not yet passed on
+     */
+    public static CubeFlowProcessor encryptor(CubeCodec codec, Executor executor, int bufferSize) {
+        return new CubeFlowProcessor(codec, true, executor, bufferSize);
+    }
+
+    /**
+     * Decrypting stage on the common ForkJoinPool with {@link Flow#defaultBufferSize()}.
+     */
+    public static CubeFlowProcessor decryptor(CubeCodec codec) {
+        return decryptor(codec, ForkJoinPool.commonPool(), Flow.defaultBufferSize());
+    }
+
+    /**
+     * @param executor   executor the messages are decrypted on
+     * @param bufferSize most messages requested from upstream and not yet passed on
+     */
+    public static CubeFlowProcessor decryptor(CubeCodec codec, Executor executor, int bufferSize) {
+        return new CubeFlowProcessor(codec, false, executor, bufferSize);
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    // ---- Subscriber side ----
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription");
+        if (upstream != null || cancelled) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        subscription.request(bufferSize);
+    }
+
+    @Override
+    public void onNext(String item) {
+        queue.offer(Objects.requireNonNull(item, "item"));
+        schedule();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = Objects.requireNonNull(throwable, "throwable");
+        done = true;
+        schedule();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        schedule();
+    }
+
+    // ---- Publisher side ----
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super String> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        // Subscribers are called without any lock held; claiming the slot is all that needs to be atomic
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("CubeFlowProcessor allows only one subscriber"));
+            return;
+        }
+        // onSubscribe happens before the subscriber becomes visible to the drain task; requests made inside it
+        // are counted and served by the drain scheduled below
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    requestError = new IllegalArgumentException("non-positive request: " + n);
+                    cancelUpstream();
+                } else {
+                    requested.getAndAccumulate(n, CubeFlowProcessor::addCapped);
+                }
+                schedule();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream();
+                schedule();
+            }
+        });
+        downstream = subscriber;
+        schedule();
+    }
+
+    private void cancelUpstream() {
+        done = true;
+        Flow.Subscription subscription = upstream;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    private void schedule() {
+        if (wip.getAndIncrement() == 0) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Passes buffered messages on while downstream has demand, then delivers the terminal signal once the
+     * buffer is empty. At most one drain task runs at a time.
+     */
+    private void drain() {
+        int missed = 1;
+        int processed = 0;
+        for (;;) {
+            Flow.Subscriber<? super String> subscriber = downstream;
+            if (terminated || cancelled) {
+                queue.clear();
+            } else if (subscriber != null && requestError != null) {
+                queue.clear();
+                error = requestError;
+                terminate(subscriber);
+            } else if (subscriber != null) {
+                long demand = requested.get();
+                long emitted = 0;
+                while (emitted != demand && !cancelled) {
+                    boolean finished = done;
+                    String item = queue.poll();
+                    if (item == null) {
+                        if (finished) {
+                            terminate(subscriber);
+                        }
+                        break;
+                    }
+                    String result;
+                    try {
+                        result = encrypt ? codec.encrypt(item) : codec.decrypt(item);
+                    } catch (RuntimeException e) {
+                        error = e;
+                        cancelUpstream();
+                        queue.clear();
+                        terminate(subscriber);
+                        break;
+                    }
+                    subscriber.onNext(result);
+                    emitted++;
+                    if (++consumed == replenishLimit) {
+                        consumed = 0;
+                        Flow.Subscription subscription = upstream;
+                        if (subscription != null && !done) {
+                            subscription.request(replenishLimit);
+                        }
+                    }
+                    if (++processed == bufferSize) {
+                        break;
+                    }
+                }
+                // A finished upstream with nothing left terminates even without demand
+                if (!cancelled && done && queue.isEmpty()) {
+                    terminate(subscriber);
+                }
+                if (emitted != 0 && demand != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+                if (processed == bufferSize) {
+                    // Hand the thread back and carry on in a fresh task; wip stays raised so nobody else starts one
+                    executor.execute(this::drain);
+                    return;
+                }
+            }
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    private void terminate(Flow.Subscriber<? super String> subscriber) {
+        if (terminated) {
+            return;
+        }
+        terminated = true;
+        Throwable failure = error;
+        if (failure != null) {
+            subscriber.onError(failure);
+        } else {
+            subscriber.onComplete();
+        }
+    }
+
+    private static long addCapped(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+}
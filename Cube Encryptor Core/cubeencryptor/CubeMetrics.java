@@ -0,0 +1,169 @@
+package cubeencryptor;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in counters and latency histograms for key derivation, encrypt, decrypt and service requests.
+ *
+ * Recording is off by default. While it is off, {@link #start()} returns 0 without reading the clock and
+ * {@link #record(Operation, long, long)} returns immediately, so the hot paths pay one volatile read.
+ * Latencies go into power-of-two nanosecond buckets, which is precise enough for percentiles in a dashboard
+ * and needs no locking.
+ */
+public final class CubeMetrics {
+    public enum Operation {
+        KEY_DERIVATION, ENCRYPT, DECRYPT, SERVICE_REQUEST
+    }
+
+    private static final int BUCKETS = 64;
+    private static final Histogram[] HISTOGRAMS = new Histogram[Operation.values().length];
+    private static volatile boolean enabled;
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new Histogram();
+        }
+    }
+
+    private CubeMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        CubeMetrics.enabled = enabled;
+    }
+
+    /**
+     * Returns the start timestamp of an operation, or 0 if recording is disabled.
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records an operation that began at {@code startNanos} (from {@link #start()}) and processed
+     * {@code characters} input characters. Does nothing if the operation started while recording was disabled.
+     */
+    public static void record(Operation operation, long startNanos, long characters) {
+        if (startNanos == 0L) {
+            return;
+        }
+        HISTOGRAMS[operation.ordinal()].record(System.nanoTime() - startNanos, characters);
+    }
+
+    public static Snapshot snapshot(Operation operation) {
+        return HISTOGRAMS[operation.ordinal()].snapshot();
+    }
+
+    /**
+     * Clears all counters and histograms.
+     */
+    public static void reset() {
+        for (Histogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+
+    static final class Histogram {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder characters = new LongAdder();
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+        Histogram() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos, long chars) {
+            nanos = Math.max(0L, nanos);
+            count.increment();
+            totalNanos.add(nanos);
+            characters.add(chars);
+            // Bucket i holds durations in [2^(i-1), 2^i) ns; bucket 0 holds 0 ns.
+            buckets[BUCKETS - Long.numberOfLeadingZeros(nanos)].increment();
+        }
+
+        Snapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return new Snapshot(count.sum(), totalNanos.sum(), characters.sum(), counts);
+        }
+
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            characters.reset();
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+        }
+    }
+
+    /**
+     * Point-in-time copy of one operation's counters.
+     */
+    public static final class Snapshot {
+        private final long count;
+        private final long totalNanos;
+        private final long characters;
+        private final long[] buckets;
+
+        Snapshot(long count, long totalNanos, long characters, long[] buckets) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.characters = characters;
+            this.buckets = buckets;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getCharacters() {
+            return characters;
+        }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        /**
+         * Returns an upper bound for the given percentile (0-100) in nanoseconds, accurate to a factor of two.
+         */
+        public long getPercentileNanos(double percentile) {
+            long total = 0;
+            for (long bucket : buckets) {
+                total += bucket;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= Math.max(1, rank)) {
+                    return i == 0 ? 0 : (i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1);
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", chars=" + characters + ", mean=" + Math.round(getMeanNanos())
+                    + "ns, p50<=" + getPercentileNanos(50) + "ns, p99<=" + getPercentileNanos(99) + "ns";
+        }
+    }
+}
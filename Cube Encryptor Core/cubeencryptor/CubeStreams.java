@@ -0,0 +1,148 @@
+package cubeencryptor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Streaming encrypt/decrypt that works through fixed-size buffers, so memory use does not grow with the input.
+ * The output is identical to {@link CubeCodec#encrypt(CharSequence)} and {@link CubeCodec#decrypt(CharSequence)}
+ * on the same text.
+ */
+public final class CubeStreams {
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private CubeStreams() {
+    }
+
+    /**
+     * Encrypts everything read from {@code in} to {@code out}. Neither stream is closed.
+     */
+    public static void encrypt(CubeCodec codec, Reader in, Writer out) throws IOException {
+        long start = CubeMetrics.start();
+        long characters = 0;
+        char[] buffer = new char[DEFAULT_BUFFER_SIZE];
+        CharBuffer bufferView = CharBuffer.wrap(buffer);
+        StringBuilder encoded = new StringBuilder(DEFAULT_BUFFER_SIZE * 5);
+        boolean pendingSpace = false;
+        // A high surrogate at the end of a read is kept back so its pair is encoded as one code point.
+        int carried = 0;
+        int read;
+        while ((read = in.read(buffer, carried, buffer.length - carried)) != -1 || carried > 0) {
+            int available = carried + Math.max(read, 0);
+            if (available == 0) {
+                continue;
+            }
+            characters += Math.max(read, 0);
+            int end = available;
+            if (read != -1 && codec.isCodePointMode() && Character.isHighSurrogate(buffer[end - 1])) {
+                end--;
+            }
+            if (end > 0) {
+                encoded.setLength(0);
+                if (pendingSpace) {
+                    encoded.append(' ');
+                }
+                codec.encode(bufferView, 0, end, encoded);
+                // Hold back the separator after the last coordinate until we know more input follows.
+                out.append(encoded, 0, encoded.length() - 1);
+                pendingSpace = true;
+            }
+            carried = available - end;
+            if (carried > 0) {
+                buffer[0] = buffer[end];
+            }
+            if (read == -1) {
+                break;
+            }
+        }
+        out.flush();
+        CubeMetrics.record(CubeMetrics.Operation.ENCRYPT, start, characters);
+    }
+
+    /**
+     * Decrypts everything read from {@code in} to {@code out}. Neither stream is closed.
+     * Coordinates are separated by single spaces; empty coordinates in the middle decode to '?', while
+     * trailing ones are dropped, just like String.split(" ").
+     */
+    public static void decrypt(CubeCodec codec, Reader in, Writer out) throws IOException {
+        long start = CubeMetrics.start();
+        long characters = 0;
+        char[] buffer = new char[DEFAULT_BUFFER_SIZE];
+        char[] decoded = new char[DEFAULT_BUFFER_SIZE];
+        int decodedLength = 0;
+        // Only the first characters of a coordinate matter: all of a valid one, plus one to reject a longer one.
+        char[] token = new char[codec.getCoordinateLength() + 1];
+        CharBuffer tokenView = CharBuffer.wrap(token);
+        int tokenLength = 0;
+        long pendingEmpty = 0;
+        boolean anyInput = false;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            anyInput |= read > 0;
+            characters += read;
+            for (int i = 0; i < read; i++) {
+                char ch = buffer[i];
+                if (ch != ' ') {
+                    if (tokenLength < token.length) {
+                        token[tokenLength++] = ch;
+                    }
+                    continue;
+                }
+                if (tokenLength == 0) {
+                    pendingEmpty++;
+                    continue;
+                }
+                for (; pendingEmpty > 0; pendingEmpty--) {
+                    if (decodedLength == decoded.length) {
+                        out.write(decoded, 0, decodedLength);
+                        decodedLength = 0;
+                    }
+                    decoded[decodedLength++] = '?';
+                }
+                // A supplementary symbol takes two chars
+                if (decodedLength >= decoded.length - 1) {
+                    out.write(decoded, 0, decodedLength);
+                    decodedLength = 0;
+                }
+                decodedLength += Character.toChars(codec.decode(tokenView, 0, tokenLength), decoded, decodedLength);
+                tokenLength = 0;
+            }
+        }
+        out.write(decoded, 0, decodedLength);
+        if (!anyInput) {
+            // "".split(" ") yields one empty coordinate
+            out.write('?');
+        } else if (tokenLength > 0) {
+            for (; pendingEmpty > 0; pendingEmpty--) {
+                out.write('?');
+            }
+            out.write(Character.toChars(codec.decode(tokenView, 0, tokenLength)));
+        }
+        out.flush();
+        CubeMetrics.record(CubeMetrics.Operation.DECRYPT, start, characters);
+    }
+
+    /**
+     * Encrypts a byte stream in the given charset. The ciphertext is written in the same charset.
+     */
+    public static void encrypt(CubeCodec codec, InputStream in, OutputStream out, Charset charset) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, charset), DEFAULT_BUFFER_SIZE);
+        encrypt(codec, new InputStreamReader(in, charset), writer);
+    }
+
+    /**
+     * Decrypts a byte stream in the given charset. The plaintext is written in the same charset.
+     */
+    public static void decrypt(CubeCodec codec, InputStream in, OutputStream out, Charset charset) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, charset), DEFAULT_BUFFER_SIZE);
+        decrypt(codec, new InputStreamReader(in, charset), writer);
+    }
+}
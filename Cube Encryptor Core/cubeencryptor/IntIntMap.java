@@ -0,0 +1,99 @@
+package cubeencryptor;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from int keys to non-negative int values, without boxing.
+ * Uses linear probing over a power-of-two table kept at most half full. Only insertion is supported.
+ */
+final class IntIntMap {
+    private static final int FREE = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    IntIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the value for the key, or -1 if absent.
+     */
+    int get(int key) {
+        if (key == FREE) {
+            // Would match every free slot
+            return -1;
+        }
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            int k = keys[slot];
+            if (k == key) {
+                return values[slot];
+            }
+            if (k == FREE) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Stores the value unless the key is already present. Returns true if it was stored.
+     */
+    boolean putIfAbsent(int key, int value) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Unsupported key: " + key);
+        }
+        if (value < 0) {
+            throw new IllegalArgumentException("Values must not be negative: " + value);
+        }
+        if ((size + 1) * 2 > keys.length) {
+            grow();
+        }
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            int k = keys[slot];
+            if (k == key) {
+                return false;
+            }
+            if (k == FREE) {
+                keys[slot] = key;
+                values[slot] = value;
+                size++;
+                return true;
+            }
+        }
+    }
+
+    boolean containsKey(int key) {
+        return get(key) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(keys, FREE);
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                putIfAbsent(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        // Fibonacci hashing spreads consecutive code points across the table
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,44 @@
+package cubeencryptor;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 helpers shared by everything that hashes keys: the event fingerprints and the schedule store.
+ */
+final class KeyDigests {
+    private KeyDigests() {
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns an independent copy of a digest's state, so a prefix shared by many hashes is only hashed once.
+     */
+    static MessageDigest copy(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            // The JDK's SHA-256 implementations are all cloneable
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The key's UTF-16 code units. Unlike a charset encoding this keeps unpaired surrogates apart, so two
+     * different keys never hash the same input.
+     */
+    static byte[] keyBytes(String key) {
+        ByteBuffer bytes = ByteBuffer.allocate(key.length() * Character.BYTES);
+        bytes.asCharBuffer().put(key);
+        return bytes.array();
+    }
+}
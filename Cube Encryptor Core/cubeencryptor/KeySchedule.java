@@ -0,0 +1,156 @@
+package cubeencryptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything derived from a raw key: the sanitized key, its cubes and the codec built from them.
+ * Instances are immutable and safe to share between the encrypt path and the Cube Navigator.
+ */
+public final class KeySchedule {
+    private final String sanitizedKey;
+    private final CubeAlphabet alphabet;
+    private final CubeCodec codec;
+    // Only the Cube Navigator needs the cubes as strings, so they are split on first use
+    private volatile List<String[]> cubes;
+
+    private KeySchedule(String sanitizedKey, CubeAlphabet alphabet, CubeCodec codec) {
+        this.sanitizedKey = sanitizedKey;
+        this.alphabet = alphabet;
+        this.codec = codec;
+    }
+
+    /**
+     * Sanitizes the raw key and builds its cubes and lookup tables.
+     */
+    public static KeySchedule derive(String rawKey) {
+        return derive(rawKey, CubeAlphabet.PRINTABLE_ASCII);
+    }
+
+    /**
+     * Sanitizes the raw key for the given alphabet and builds its cubes and lookup tables.
+     */
+    public static KeySchedule derive(String rawKey, CubeAlphabet alphabet) {
+        long start = CubeMetrics.start();
+        String sanitizedKey = sanitize(rawKey, alphabet);
+        KeySchedule schedule = new KeySchedule(sanitizedKey, alphabet, new CubeCodec(sanitizedKey, alphabet));
+        CubeMetrics.record(CubeMetrics.Operation.KEY_DERIVATION, start, rawKey.length());
+        return schedule;
+    }
+
+    /**
+     * Wraps the lookup tables of a key that is already sanitized for the alphabet, such as the ones loaded from
+     * a {@link KeyScheduleStore}.
+     */
+    static KeySchedule fromCodec(CubeCodec codec, CubeAlphabet alphabet) {
+        return new KeySchedule(codec.getKey(), alphabet, codec);
+    }
+
+    /**
+     * Removes duplicate characters from the key and appends the missing printable ASCII characters.
+     */
+    public static String sanitize(String inputKey) {
+        return sanitize(inputKey, CubeAlphabet.PRINTABLE_ASCII);
+    }
+
+    /**
+     * Removes duplicate symbols from the key and appends the symbols of the alphabet it does not contain yet.
+     * The legacy alphabet compares chars; every other alphabet compares code points.
+     */
+    public static String sanitize(String inputKey, CubeAlphabet alphabet) {
+        CubeEvents.SanitizeKey event = new CubeEvents.SanitizeKey();
+        event.begin();
+        boolean codePoints = !alphabet.isLegacy();
+        IntIntMap used = new IntIntMap(inputKey.length() + alphabet.size());
+        StringBuilder sanitizedKey = new StringBuilder(inputKey.length() + alphabet.size());
+        for (int i = 0; i < inputKey.length(); ) {
+            int symbol = codePoints ? inputKey.codePointAt(i) : inputKey.charAt(i);
+            i += codePoints ? Character.charCount(symbol) : 1;
+            if (used.putIfAbsent(symbol, 0)) {
+                sanitizedKey.appendCodePoint(symbol);
+            }
+        }
+        for (int range = 0; range < alphabet.rangeCount(); range++) {
+            for (int symbol = alphabet.rangeStart(range); symbol <= alphabet.rangeEnd(range); symbol++) {
+                if (!used.containsKey(symbol)) {
+                    sanitizedKey.appendCodePoint(symbol);
+                }
+            }
+        }
+        String result = sanitizedKey.toString();
+        event.end();
+        if (event.shouldCommit()) {
+            event.keyFingerprint = CubeEvents.fingerprint(result);
+            event.keyLength = inputKey.length();
+            event.alphabetSize = alphabet.size();
+            event.scheduleLength = result.length();
+            event.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Splits a key into cubes of six faces, padding the last cube with spaces.
+     */
+    public static List<String[]> splitIntoCubes(String key) {
+        return splitIntoCubes(key, false);
+    }
+
+    /**
+     * Splits a key into cubes of six faces, padding the last cube with spaces. With {@code codePoints} set
+     * a supplementary character takes one face instead of two.
+     */
+    public static List<String[]> splitIntoCubes(String key, boolean codePoints) {
+        CubeEvents.GenerateCubes event = new CubeEvents.GenerateCubes();
+        event.begin();
+        List<String[]> cubes = new ArrayList<>();
+        int cubeSize = CubeCodec.CUBE_SIZE;
+        int offset = 0;
+        while (offset < key.length()) {
+            String[] cube = new String[cubeSize];
+            for (int j = 0; j < cubeSize; j++) {
+                if (offset < key.length()) {
+                    int end = codePoints ? key.offsetByCodePoints(offset, 1) : offset + 1;
+                    cube[j] = key.substring(offset, end);
+                    offset = end;
+                } else {
+                    cube[j] = String.valueOf(CubeCodec.PAD);
+                }
+            }
+            cubes.add(cube);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.keyFingerprint = CubeEvents.fingerprint(key);
+            event.cubeCount = cubes.size();
+            event.commit();
+        }
+        return cubes;
+    }
+
+    public String getSanitizedKey() {
+        return sanitizedKey;
+    }
+
+    public CubeAlphabet getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * Returns the cubes of this schedule. The list is shared and must not be modified.
+     */
+    public List<String[]> getCubes() {
+        List<String[]> split = cubes;
+        if (split == null) {
+            // Racing threads split equal lists; either one may be kept
+            split = Collections.unmodifiableList(splitIntoCubes(sanitizedKey, !alphabet.isLegacy()));
+            cubes = split;
+        }
+        return split;
+    }
+
+    public CubeCodec getCodec() {
+        return codec;
+    }
+}
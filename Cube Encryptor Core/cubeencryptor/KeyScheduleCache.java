@@ -0,0 +1,121 @@
+package cubeencryptor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe, size-bounded LRU cache from raw key to its {@link KeySchedule}. All schedules in one cache are
+ * derived for the same alphabet. A cache may be backed by a {@link KeyScheduleStore}, which is consulted on a
+ * miss before the key is derived.
+ *
+ * Derivation happens outside the lock, so two threads missing on the same key at the same time may both
+ * derive it; the schedules are equal and the last one stored wins.
+ */
+public class KeyScheduleCache {
+    private final int maxSize;
+    private final CubeAlphabet alphabet;
+    private final KeyScheduleStore store;
+    private final Map<String, KeySchedule> schedules;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public KeyScheduleCache(int maxSize) {
+        this(maxSize, CubeAlphabet.PRINTABLE_ASCII);
+    }
+
+    public KeyScheduleCache(int maxSize, CubeAlphabet alphabet) {
+        this(maxSize, alphabet, null);
+    }
+
+    /**
+     * Creates a cache that loads schedules from {@code store} (if not null) before deriving them.
+     */
+    public KeyScheduleCache(int maxSize, KeyScheduleStore store) {
+        this(maxSize, store.getAlphabet(), store);
+    }
+
+    private KeyScheduleCache(int maxSize, CubeAlphabet alphabet, KeyScheduleStore store) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.alphabet = alphabet;
+        this.store = store;
+        this.schedules = new LinkedHashMap<String, KeySchedule>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, KeySchedule> eldest) {
+                if (size() > KeyScheduleCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the schedule for the raw key, loading or deriving and caching it on a miss.
+     */
+    public KeySchedule get(String rawKey) {
+        synchronized (this) {
+            KeySchedule schedule = schedules.get(rawKey);
+            if (schedule != null) {
+                hits++;
+                return schedule;
+            }
+            misses++;
+        }
+        KeySchedule schedule = store == null ? null : store.get(rawKey);
+        if (schedule == null) {
+            schedule = KeySchedule.derive(rawKey, alphabet);
+        }
+        synchronized (this) {
+            schedules.put(rawKey, schedule);
+        }
+        return schedule;
+    }
+
+    /**
+     * Returns the schedule of a key that is already sanitized for the alphabet, caching it under that key as
+     * {@link #get} would, or null if sanitizing would change the key. Nothing is derived or cached for such keys.
+     */
+    public KeySchedule getIfSanitized(String key) {
+        synchronized (this) {
+            KeySchedule schedule = schedules.get(key);
+            if (schedule != null && schedule.getSanitizedKey().equals(key)) {
+                hits++;
+                return schedule;
+            }
+        }
+        return KeySchedule.sanitize(key, alphabet).equals(key) ? get(key) : null;
+    }
+
+    public synchronized void clear() {
+        schedules.clear();
+    }
+
+    public synchronized int size() {
+        return schedules.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public CubeAlphabet getAlphabet() {
+        return alphabet;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+}
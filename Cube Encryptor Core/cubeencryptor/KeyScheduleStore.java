@@ -0,0 +1,402 @@
+package cubeencryptor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Read-only, memory-mapped file of precomputed key schedules, so a process can start with hundreds or
+ * thousands of keys without sanitizing each one.
+ *
+ * Every record holds a schedule's face table as {@link CubeCodec} uses it: the symbol on every face, each as few
+ * bytes wide as the schedule allows. Opening a store only maps the file and checks its header and index, so a
+ * truncated store fails there with an IOException; the records are checked as they are read. The first lookup of
+ * a key hashes it once, finds its record by binary search over an index sorted by fingerprint, and unmasks the
+ * face table from the mapping straight into the codec; the key is not sanitized, which makes it cheaper than
+ * deriving the schedule (see KeyScheduleStoreBenchmark). The code tables are not stored: the codec inverts the
+ * face table in one pass, which costs less than unmasking them would. The schedule is kept, so later lookups of
+ * the key only hash it, search the index and return the same instance.
+ *
+ * The raw key is never written, and since the face table gives the key away it is masked. One SHA-256 over a
+ * per-store salt, the alphabet and the key yields both halves a record needs: the first 16 bytes are the
+ * fingerprint in the index, the last 16 the mask key. The mask is SHA-256 in counter mode over the mask key, one
+ * single-block hash per 32 bytes of the table, so a record can only be read by someone who already knows its key.
+ * (AES-CTR would do as well, but setting up a fresh AES key for every record costs more than deriving the
+ * schedule.) The salt and alphabet prefix is hashed once when the store is opened. Lookups only use absolute
+ * reads of the mapping, so a store can be shared between threads.
+ *
+ * <pre>
+ * int    magic "CUBS", int version
+ * byte[] salt (16)
+ * int    alphabet spec length, then the spec in UTF-8
+ * int    record count
+ * index  per record: byte[16] fingerprint, long offset, int length; sorted by fingerprint
+ * record byte symbol width (1, 2 or 4), int key length in symbols, int face count, then the masked face symbols
+ * </pre>
+ */
+public final class KeyScheduleStore {
+    private static final int MAGIC = 0x43554253;
+    private static final int VERSION = 2;
+    private static final int SALT_LENGTH = 16;
+    private static final int FINGERPRINT_LENGTH = 16;
+    private static final int INDEX_ENTRY_LENGTH = FINGERPRINT_LENGTH + Long.BYTES + Integer.BYTES;
+    private static final int RECORD_HEADER_LENGTH = 1 + 2 * Integer.BYTES;
+    private static final int MASK_BLOCK_LENGTH = 32;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    // Mask blocks are hashed with a digest per thread, since looking one up costs more than the hash
+    private static final ThreadLocal<MessageDigest> MASK_DIGEST = ThreadLocal.withInitial(KeyDigests::sha256);
+
+    private final Path file;
+    private final ByteBuffer data;
+    private final CubeAlphabet alphabet;
+    private final int count;
+    private final int indexOffset;
+    // Digest that has already absorbed the salt and alphabet; only ever copied, never updated
+    private final MessageDigest prefix;
+    // Schedules read so far, by record
+    private final AtomicReferenceArray<KeySchedule> schedules;
+
+    private KeyScheduleStore(Path file, ByteBuffer data, byte[] salt, CubeAlphabet alphabet, int count,
+            int indexOffset) {
+        this.file = file;
+        this.data = data;
+        this.alphabet = alphabet;
+        this.count = count;
+        this.indexOffset = indexOffset;
+        this.prefix = digestPrefix(salt, alphabet);
+        this.schedules = new AtomicReferenceArray<>(count);
+    }
+
+    /**
+     * Derives the schedule of every raw key for the given alphabet and writes them to {@code file}, replacing it.
+     */
+    public static void write(Path file, CubeAlphabet alphabet, Iterable<String> rawKeys) throws IOException {
+        byte[] salt = new byte[SALT_LENGTH];
+        new SecureRandom().nextBytes(salt);
+        byte[] spec = alphabet.toString().getBytes(StandardCharsets.UTF_8);
+        MessageDigest prefix = digestPrefix(salt, alphabet);
+
+        Set<String> distinctKeys = new LinkedHashSet<>();
+        for (String rawKey : rawKeys) {
+            distinctKeys.add(rawKey);
+        }
+        List<byte[]> fingerprints = new ArrayList<>(distinctKeys.size());
+        List<byte[]> records = new ArrayList<>(distinctKeys.size());
+        for (String rawKey : distinctKeys) {
+            byte[] digest = digest(prefix, rawKey);
+            fingerprints.add(Arrays.copyOf(digest, FINGERPRINT_LENGTH));
+            records.add(encodeRecord(digest, KeySchedule.derive(rawKey, alphabet).getCodec()));
+        }
+        Integer[] order = new Integer[records.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(fingerprints.get(a), fingerprints.get(b)));
+
+        int headerLength = 2 * Integer.BYTES + SALT_LENGTH + Integer.BYTES + spec.length + Integer.BYTES;
+        long recordOffset = headerLength + (long) order.length * INDEX_ENTRY_LENGTH;
+        ByteBuffer header = ByteBuffer.allocate((int) recordOffset);
+        header.putInt(MAGIC).putInt(VERSION).put(salt).putInt(spec.length).put(spec).putInt(order.length);
+        for (int i : order) {
+            header.put(fingerprints.get(i)).putLong(recordOffset).putInt(records.get(i).length);
+            recordOffset += records.get(i).length;
+        }
+        header.flip();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, header);
+            for (int i : order) {
+                writeFully(out, ByteBuffer.wrap(records.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Maps a store written by {@link #write(Path, CubeAlphabet, Iterable)}. Only the header and index are read.
+     *
+     * @throws IOException if the file cannot be read, is not a store, or its index is truncated or corrupt
+     */
+    public static KeyScheduleStore open(Path file) throws IOException {
+        ByteBuffer data;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (in.size() > Integer.MAX_VALUE) {
+                throw new IOException("Key schedule store too large: " + file);
+            }
+            data = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+        }
+        try {
+            if (data.getInt() != MAGIC) {
+                throw new IOException("Not a key schedule store: " + file);
+            }
+            int version = data.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported key schedule store version " + version
+                        + " (write the store again): " + file);
+            }
+            byte[] salt = new byte[SALT_LENGTH];
+            data.get(salt);
+            byte[] spec = new byte[data.getInt()];
+            data.get(spec);
+            CubeAlphabet alphabet = CubeAlphabet.parse(new String(spec, StandardCharsets.UTF_8));
+            int count = data.getInt();
+            int indexOffset = data.position();
+            if (count < 0 || indexOffset + (long) count * INDEX_ENTRY_LENGTH > data.limit()) {
+                throw new IOException("Truncated key schedule store: " + file);
+            }
+            checkIndex(file, data, indexOffset, count);
+            return new KeyScheduleStore(file, data, salt, alphabet, count, indexOffset);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt key schedule store: " + file, e);
+        }
+    }
+
+    /**
+     * Checks that the fingerprints are in order, which the binary search relies on, and that every record lies
+     * after the index and within the mapping.
+     */
+    private static void checkIndex(Path file, ByteBuffer data, int indexOffset, int count) throws IOException {
+        long recordsStart = indexOffset + (long) count * INDEX_ENTRY_LENGTH;
+        for (int record = 0; record < count; record++) {
+            int entry = indexOffset + record * INDEX_ENTRY_LENGTH;
+            if (record > 0) {
+                int previous = entry - INDEX_ENTRY_LENGTH;
+                int cmp = Long.compareUnsigned(data.getLong(previous), data.getLong(entry));
+                if (cmp == 0) {
+                    cmp = Long.compareUnsigned(data.getLong(previous + Long.BYTES), data.getLong(entry + Long.BYTES));
+                }
+                if (cmp >= 0) {
+                    throw new IOException("Corrupt key schedule store, index out of order at record " + record + ": "
+                            + file);
+                }
+            }
+            long offset = data.getLong(entry + FINGERPRINT_LENGTH);
+            int length = data.getInt(entry + FINGERPRINT_LENGTH + Long.BYTES);
+            if (offset < recordsStart || length < RECORD_HEADER_LENGTH || offset + length > data.limit()) {
+                throw new IOException("Truncated or corrupt key schedule store, record " + record + " at " + offset
+                        + " of length " + length + " does not fit in " + data.limit() + " bytes: " + file);
+            }
+        }
+    }
+
+    /**
+     * Returns the stored schedule for the raw key, or null if the store does not hold it.
+     *
+     * @throws UncheckedIOException wrapping an IOException if the key's record is corrupt
+     */
+    public KeySchedule get(String rawKey) {
+        byte[] digest = digest(prefix, rawKey);
+        int record = find(digest);
+        if (record < 0) {
+            return null;
+        }
+        KeySchedule schedule = schedules.get(record);
+        if (schedule == null) {
+            schedule = decodeRecord(record, digest);
+            // Threads racing on the same record decode equal schedules; everyone gets the one stored first
+            if (!schedules.compareAndSet(record, null, schedule)) {
+                schedule = schedules.get(record);
+            }
+        }
+        return schedule;
+    }
+
+    private KeySchedule decodeRecord(int record, byte[] digest) {
+        int entry = indexOffset + record * INDEX_ENTRY_LENGTH + FINGERPRINT_LENGTH;
+        int offset = (int) data.getLong(entry);
+        int length = data.getInt(entry + Long.BYTES);
+        int symbolWidth = data.get(offset);
+        int keyLength = data.getInt(offset + 1);
+        int faces = data.getInt(offset + 1 + Integer.BYTES);
+        // open() checked that the record lies within the mapping; its header must describe exactly that much
+        int maxWidth = alphabet.isLegacy() ? Short.BYTES : Integer.BYTES;
+        if (symbolWidth != Byte.BYTES && symbolWidth != Short.BYTES && symbolWidth != Integer.BYTES
+                || symbolWidth > maxWidth || faces <= 0 || faces % CubeCodec.CUBE_SIZE != 0
+                || (long) faces * symbolWidth != length - RECORD_HEADER_LENGTH || keyLength < 0 || keyLength > faces) {
+            throw corrupt(record);
+        }
+
+        // Copied out of the mapping once and unmasked in place
+        byte[] table = new byte[length - RECORD_HEADER_LENGTH];
+        data.get(offset + RECORD_HEADER_LENGTH, table);
+        mask(table, digest);
+
+        int[] symbols = new int[faces];
+        for (int i = 0, position = 0; i < faces; i++, position += symbolWidth) {
+            int symbol = read(table, position, symbolWidth);
+            if (symbol < 0 || symbol > Character.MAX_CODE_POINT) {
+                throw corrupt(record);
+            }
+            symbols[i] = symbol;
+        }
+        String sanitizedKey;
+        if (symbolWidth < Integer.BYTES) {
+            char[] chars = new char[keyLength];
+            for (int i = 0; i < keyLength; i++) {
+                chars[i] = (char) symbols[i];
+            }
+            sanitizedKey = new String(chars);
+        } else {
+            sanitizedKey = new String(symbols, 0, keyLength);
+        }
+        CubeCodec codec = new CubeCodec(sanitizedKey, !alphabet.isLegacy(), symbols);
+        return KeySchedule.fromCodec(codec, alphabet);
+    }
+
+    private UncheckedIOException corrupt(int record) {
+        return new UncheckedIOException(new IOException("Corrupt key schedule store, record " + record
+                + " cannot be decoded: " + file));
+    }
+
+    public boolean contains(String rawKey) {
+        return find(digest(prefix, rawKey)) >= 0;
+    }
+
+    public CubeAlphabet getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * Number of schedules in the store.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Finds the record whose fingerprint is the start of {@code digest}.
+     */
+    private int find(byte[] digest) {
+        long high64 = (long) LONGS.get(digest, 0);
+        long low64 = (long) LONGS.get(digest, Long.BYTES);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = indexOffset + mid * INDEX_ENTRY_LENGTH;
+            int cmp = Long.compareUnsigned(data.getLong(entry), high64);
+            if (cmp == 0) {
+                cmp = Long.compareUnsigned(data.getLong(entry + Long.BYTES), low64);
+            }
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] encodeRecord(byte[] digest, CubeCodec codec) {
+        int faces = codec.getCubeCount() * CubeCodec.CUBE_SIZE;
+        String key = codec.getKey();
+        int keyLength = codec.isCodePointMode() ? key.codePointCount(0, key.length()) : key.length();
+        int maxSymbol = 0;
+        for (int code = 0; code < faces; code++) {
+            maxSymbol = Math.max(maxSymbol, codec.symbolAt(code));
+        }
+        int symbolWidth = width(maxSymbol);
+
+        byte[] table = new byte[faces * symbolWidth];
+        for (int code = 0, position = 0; code < faces; code++, position += symbolWidth) {
+            write(table, position, symbolWidth, codec.symbolAt(code));
+        }
+        mask(table, digest);
+
+        return ByteBuffer.allocate(RECORD_HEADER_LENGTH + table.length)
+                .put((byte) symbolWidth).putInt(keyLength).putInt(faces).put(table).array();
+    }
+
+    /**
+     * Bytes needed for values up to {@code max}.
+     */
+    private static int width(int max) {
+        return max <= 0xFF ? Byte.BYTES : max <= 0xFFFF ? Short.BYTES : Integer.BYTES;
+    }
+
+    /**
+     * Writes the low {@code width} bytes of a value big-endian.
+     */
+    private static void write(byte[] table, int position, int width, int value) {
+        for (int i = width - 1; i >= 0; i--) {
+            table[position + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static int read(byte[] table, int position, int width) {
+        switch (width) {
+            case Byte.BYTES:
+                return table[position] & 0xFF;
+            case Short.BYTES:
+                return (table[position] & 0xFF) << 8 | table[position + 1] & 0xFF;
+            default:
+                return table[position] << 24 | (table[position + 1] & 0xFF) << 16
+                        | (table[position + 2] & 0xFF) << 8 | table[position + 3] & 0xFF;
+        }
+    }
+
+    /**
+     * XORs the table with SHA-256 of the mask key (the second half of the digest) and a block counter.
+     */
+    private static void mask(byte[] table, byte[] digest) {
+        MessageDigest sha = MASK_DIGEST.get();
+        byte[] block = new byte[MASK_BLOCK_LENGTH];
+        byte[] counter = new byte[Integer.BYTES];
+        for (int blockIndex = 0, position = 0; position < table.length; blockIndex++) {
+            write(counter, 0, Integer.BYTES, blockIndex);
+            sha.update(digest, FINGERPRINT_LENGTH, digest.length - FINGERPRINT_LENGTH);
+            sha.update(counter);
+            try {
+                sha.digest(block, 0, MASK_BLOCK_LENGTH);
+            } catch (DigestException e) {
+                // The block always has room for a SHA-256 hash
+                throw new IllegalStateException(e);
+            }
+            for (int i = 0; i < MASK_BLOCK_LENGTH && position < table.length; i++, position++) {
+                table[position] ^= block[i];
+            }
+        }
+    }
+
+    /**
+     * SHA-256 state after the salt, the alphabet spec and a 0 separator.
+     */
+    private static MessageDigest digestPrefix(byte[] salt, CubeAlphabet alphabet) {
+        MessageDigest sha = KeyDigests.sha256();
+        sha.update(salt);
+        sha.update(alphabet.toString().getBytes(StandardCharsets.UTF_8));
+        sha.update((byte) 0);
+        return sha;
+    }
+
+    /**
+     * SHA-256 over the prefix and the key: the fingerprint, then the mask key of the record.
+     */
+    private static byte[] digest(MessageDigest prefix, String rawKey) {
+        return KeyDigests.copy(prefix).digest(KeyDigests.keyBytes(rawKey));
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
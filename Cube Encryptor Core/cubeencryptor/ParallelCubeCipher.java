@@ -0,0 +1,162 @@
+package cubeencryptor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Encrypts and decrypts large inputs in parallel. Every symbol maps to its coordinate independently,
+ * so the input is cut into chunks, each chunk is encoded on the executor and the results are joined in order.
+ * Inputs shorter than the threshold are handled on the calling thread.
+ */
+public class ParallelCubeCipher {
+    public static final int DEFAULT_THRESHOLD = 1 << 16;
+
+    private final int threshold;
+    private final Executor executor;
+    private final int parallelism;
+
+    /**
+     * Uses the common ForkJoinPool and the default threshold.
+     */
+    public ParallelCubeCipher() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    public ParallelCubeCipher(int threshold) {
+        this(threshold, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * @param threshold   input length below which work stays on the calling thread; also the smallest chunk size
+     * @param executor    executor the chunks are encoded on
+     * @param parallelism number of threads the executor can run at once, used to size the chunks
+     */
+    public ParallelCubeCipher(int threshold, Executor executor, int parallelism) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("threshold must be positive: " + threshold);
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.threshold = threshold;
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Same output as {@link CubeCodec#encrypt(CharSequence)}.
+     */
+    public String encrypt(CubeCodec codec, CharSequence text) {
+        int length = text.length();
+        if (length < threshold || parallelism == 1) {
+            return codec.encrypt(text);
+        }
+        long startNanos = CubeMetrics.start();
+        CubeEvents.Encrypt event = new CubeEvents.Encrypt();
+        event.begin();
+        int chunkSize = chunkSize(length);
+        List<CompletableFuture<StringBuilder>> chunks = new ArrayList<>();
+        for (int from = 0; from < length; ) {
+            int start = from;
+            // Keep surrogate pairs together for code point schedules.
+            int end = CubeCodec.alignToCodePoint(text, Math.min(length, from + chunkSize));
+            from = end;
+            chunks.add(CompletableFuture.supplyAsync(() -> {
+                StringBuilder out = new StringBuilder((end - start) * 5);
+                codec.encode(text, start, end, out);
+                return out;
+            }, executor));
+        }
+        StringBuilder encrypted = join(chunks);
+        encrypted.setLength(encrypted.length() - 1);
+        event.end();
+        if (event.shouldCommit()) {
+            event.keyFingerprint = codec.getKeyFingerprint();
+            event.inputLength = length;
+            event.outputLength = encrypted.length();
+            event.parallel = true;
+            event.commit();
+        }
+        CubeMetrics.record(CubeMetrics.Operation.ENCRYPT, startNanos, length);
+        return encrypted.toString();
+    }
+
+    /**
+     * Same output as {@link CubeCodec#decrypt(CharSequence)}.
+     */
+    public String decrypt(CubeCodec codec, CharSequence encryptedText) {
+        int length = encryptedText.length();
+        if (length < threshold || parallelism == 1) {
+            return codec.decrypt(encryptedText);
+        }
+        long startNanos = CubeMetrics.start();
+        CubeEvents.Decrypt event = new CubeEvents.Decrypt();
+        event.begin();
+        int inputLength = length;
+        // Trailing empty coordinates are dropped, so trailing separators can be cut off before chunking.
+        while (length > 0 && encryptedText.charAt(length - 1) == ' ') {
+            length--;
+        }
+        int chunkSize = chunkSize(length);
+        List<CompletableFuture<StringBuilder>> chunks = new ArrayList<>();
+        int from = 0;
+        while (from < length) {
+            // Cut only at a separator so no coordinate is split between chunks.
+            int end = indexOfSpace(encryptedText, Math.min(length, from + chunkSize), length);
+            int start = from;
+            chunks.add(CompletableFuture.supplyAsync(() -> {
+                StringBuilder out = new StringBuilder((end - start) / 5 + 1);
+                codec.decodeTokens(encryptedText, start, end, out, false);
+                return out;
+            }, executor));
+            from = end + 1;
+        }
+        StringBuilder decrypted = join(chunks);
+        event.end();
+        if (event.shouldCommit()) {
+            event.keyFingerprint = codec.getKeyFingerprint();
+            event.inputLength = inputLength;
+            event.outputLength = decrypted.length();
+            event.parallel = true;
+            event.commit();
+        }
+        CubeMetrics.record(CubeMetrics.Operation.DECRYPT, startNanos, inputLength);
+        return decrypted.toString();
+    }
+
+    private int chunkSize(int length) {
+        // A few chunks per thread evens out threads that finish early.
+        return Math.max(threshold, length / (parallelism * 4) + 1);
+    }
+
+    private static int indexOfSpace(CharSequence text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == ' ') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private static StringBuilder join(List<CompletableFuture<StringBuilder>> chunks) {
+        List<StringBuilder> parts = new ArrayList<>(chunks.size());
+        int total = 0;
+        for (CompletableFuture<StringBuilder> chunk : chunks) {
+            StringBuilder part = chunk.join();
+            parts.add(part);
+            total += part.length();
+        }
+        StringBuilder joined = new StringBuilder(total);
+        for (StringBuilder part : parts) {
+            joined.append(part);
+        }
+        return joined;
+    }
+}
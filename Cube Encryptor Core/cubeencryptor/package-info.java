@@ -0,0 +1,9 @@
+/**
+ * The cipher core: key schedules, the codec and everything built on it (streams, binary format, bulk and
+ * file encryption, batches and Flow processors).
+ *
+ * Nothing in this package touches AWT, Swing or the desktop framework, and it has no dependencies, so it is
+ * built as a library of its own ({@code cube-encryptor-core}). The command line and the localhost service are in
+ * {@code cubeencryptor.app}, and the desktop module ({@code Main}) is built on top of both.
+ */
+package cubeencryptor;
@@ -0,0 +1,118 @@
+package cubeencryptor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The original String-based cipher from Main, kept verbatim apart from the logging, as the reference every fast
+ * path is checked against.
+ */
+final class BaselineCipher {
+    private BaselineCipher() {
+    }
+
+    static String sanitizeKey(String inputKey) {
+        Set<Character> usedChars = new LinkedHashSet<>();
+        StringBuilder sanitizedKey = new StringBuilder();
+        for (char ch : inputKey.toCharArray()) {
+            if (!usedChars.contains(ch)) {
+                usedChars.add(ch);
+                sanitizedKey.append(ch);
+            }
+        }
+        for (char ch = 32; ch <= 126; ch++) {
+            if (!usedChars.contains(ch)) {
+                sanitizedKey.append(ch);
+            }
+        }
+        return sanitizedKey.toString();
+    }
+
+    static List<String[]> generateCubes(String key) {
+        List<String[]> cubes = new ArrayList<>();
+        int cubeSize = 6;
+        for (int i = 0; i < key.length(); i += cubeSize) {
+            String[] cube = new String[cubeSize];
+            for (int j = 0; j < cubeSize; j++) {
+                if (i + j < key.length()) {
+                    cube[j] = String.valueOf(key.charAt(i + j));
+                } else {
+                    cube[j] = " "; // pad if needed
+                }
+            }
+            cubes.add(cube);
+        }
+        return cubes;
+    }
+
+    /**
+     * Encrypts under the raw key, sanitizing it first as Main did.
+     */
+    static String encrypt(String text, String rawKey) {
+        List<String[]> cubes = generateCubes(sanitizeKey(rawKey));
+        StringBuilder encryptedText = new StringBuilder();
+        for (char letter : text.toCharArray()) {
+            String encrypted = findCoordinates(letter, cubes);
+            encryptedText.append(encrypted).append(" ");
+        }
+        return encryptedText.toString().trim();
+    }
+
+    /**
+     * Decrypts under the raw key, sanitizing it first as Main did.
+     */
+    static String decrypt(String encryptedText, String rawKey) {
+        List<String[]> cubes = generateCubes(sanitizeKey(rawKey));
+        StringBuilder decryptedText = new StringBuilder();
+        String[] codes = encryptedText.split(" ");
+        for (String code : codes) {
+            char decrypted = findCharacter(code, cubes);
+            decryptedText.append(decrypted);
+        }
+        return decryptedText.toString();
+    }
+
+    private static String findCoordinates(char letter, List<String[]> cubes) {
+        for (int cubeNumber = 0; cubeNumber < cubes.size(); cubeNumber++) {
+            String[] cube = cubes.get(cubeNumber);
+            for (int index = 0; index < cube.length; index++) {
+                if (cube[index].equals(String.valueOf(letter))) {
+                    String coordinate;
+                    switch (index) {
+                        case 0: coordinate = "L1"; break;
+                        case 1: coordinate = "C1"; break;
+                        case 2: coordinate = "C2"; break;
+                        case 3: coordinate = "C3"; break;
+                        case 4: coordinate = "R1"; break;
+                        case 5: coordinate = "R2"; break;
+                        default: coordinate = "";
+                    }
+                    return String.format("%02d%s", cubeNumber + 1, coordinate);
+                }
+            }
+        }
+        return "??";
+    }
+
+    private static char findCharacter(String cubeCode, List<String[]> cubes) {
+        try {
+            int cubeNumber = Integer.parseInt(cubeCode.substring(0, 2)) - 1;
+            String coordinate = cubeCode.substring(2);
+            int index;
+            switch (coordinate) {
+                case "L1": index = 0; break;
+                case "C1": index = 1; break;
+                case "C2": index = 2; break;
+                case "C3": index = 3; break;
+                case "R1": index = 4; break;
+                case "R2": index = 5; break;
+                default: return '?';
+            }
+            return cubes.get(cubeNumber)[index].charAt(0);
+        } catch (Exception e) {
+            return '?';
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package cubeencryptor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link BaselineCipher} generalised to alphabets of code points and to schedules of more than 99 cubes: the same
+ * sanitize, split and scan steps over code points instead of chars, with every cube number as wide as the largest
+ * one. The reference for codecs built for any alphabet other than printable ASCII, and for wide schedules.
+ */
+final class CodePointBaseline {
+    private static final String[] FACES = {"L1", "C1", "C2", "C3", "R1", "R2"};
+
+    private CodePointBaseline() {
+    }
+
+    static List<Integer> sanitizeKey(String inputKey, CubeAlphabet alphabet, boolean codePoints) {
+        Set<Integer> used = new LinkedHashSet<>();
+        for (int i = 0; i < inputKey.length(); ) {
+            int symbol = codePoints ? inputKey.codePointAt(i) : inputKey.charAt(i);
+            i += codePoints ? Character.charCount(symbol) : 1;
+            used.add(symbol);
+        }
+        List<Integer> sanitized = new ArrayList<>(used);
+        for (int range = 0; range < alphabet.rangeCount(); range++) {
+            for (int symbol = alphabet.rangeStart(range); symbol <= alphabet.rangeEnd(range); symbol++) {
+                if (!used.contains(symbol)) {
+                    sanitized.add(symbol);
+                }
+            }
+        }
+        return sanitized;
+    }
+
+    /**
+     * Encrypts under the raw key; code points unless the alphabet is the legacy one.
+     */
+    static String encrypt(String text, String rawKey, CubeAlphabet alphabet) {
+        boolean codePoints = !alphabet.isLegacy();
+        List<int[]> cubes = generateCubes(sanitizeKey(rawKey, alphabet, codePoints));
+        String format = "%0" + Math.max(2, Integer.toString(cubes.size()).length()) + "d%s";
+        StringBuilder encryptedText = new StringBuilder();
+        for (int i = 0; i < text.length(); ) {
+            int symbol = codePoints ? text.codePointAt(i) : text.charAt(i);
+            i += codePoints ? Character.charCount(symbol) : 1;
+            encryptedText.append(findCoordinates(symbol, cubes, format)).append(' ');
+        }
+        return encryptedText.toString().trim();
+    }
+
+    /**
+     * Decrypts well-formed ciphertext, every coordinate as wide as {@link #encrypt(String, String, CubeAlphabet)}
+     * writes them, or "??".
+     */
+    static String decrypt(String encryptedText, String rawKey, CubeAlphabet alphabet) {
+        List<int[]> cubes = generateCubes(sanitizeKey(rawKey, alphabet, !alphabet.isLegacy()));
+        StringBuilder decryptedText = new StringBuilder();
+        for (String code : encryptedText.split(" ")) {
+            int face = code.length() < 3 ? -1 : List.of(FACES).indexOf(code.substring(code.length() - 2));
+            if (face < 0) {
+                decryptedText.append('?');
+            } else {
+                int cubeNumber = Integer.parseInt(code.substring(0, code.length() - 2)) - 1;
+                decryptedText.appendCodePoint(cubes.get(cubeNumber)[face]);
+            }
+        }
+        return decryptedText.toString();
+    }
+
+    private static List<int[]> generateCubes(List<Integer> key) {
+        List<int[]> cubes = new ArrayList<>();
+        for (int i = 0; i < key.size(); i += 6) {
+            int[] cube = new int[6];
+            for (int j = 0; j < 6; j++) {
+                cube[j] = i + j < key.size() ? key.get(i + j) : ' ';
+            }
+            cubes.add(cube);
+        }
+        return cubes;
+    }
+
+    private static String findCoordinates(int symbol, List<int[]> cubes, String format) {
+        for (int cubeNumber = 0; cubeNumber < cubes.size(); cubeNumber++) {
+            int[] cube = cubes.get(cubeNumber);
+            for (int index = 0; index < cube.length; index++) {
+                if (cube[index] == symbol) {
+                    return String.format(format, cubeNumber + 1, FACES[index]);
+                }
+            }
+        }
+        return "??";
+    }
+}
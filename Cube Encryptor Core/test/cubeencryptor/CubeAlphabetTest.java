@@ -0,0 +1,66 @@
+package cubeencryptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Parsing and validation of alphabet specs: notations, surrogate removal and the ranges that are refused.
+ */
+class CubeAlphabetTest {
+
+    @Test
+    void parsesEveryNotation() {
+        CubeAlphabet alphabet = CubeAlphabet.parse("32-126, 0xA0-0x17F ,U+1F600-U+1F64F,0x3042");
+        assertEquals(95 + 224 + 80 + 1, alphabet.size());
+        assertEquals("U+20-U+7E,U+A0-U+17F,U+1F600-U+1F64F,U+3042", alphabet.toString());
+        assertEquals(alphabet, CubeAlphabet.parse(alphabet.toString()));
+        assertTrue(alphabet.contains(0x1F600));
+        assertFalse(alphabet.contains(0x3041));
+    }
+
+    @Test
+    void printableAsciiIsTheLegacyAlphabet() {
+        assertSame(CubeAlphabet.PRINTABLE_ASCII, CubeAlphabet.parse("32-126"));
+        assertTrue(CubeAlphabet.parse("0x20-0x7E").isLegacy());
+        assertFalse(CubeAlphabet.parse("32-127").isLegacy());
+    }
+
+    @Test
+    void surrogatesAreCutOutOfRanges() {
+        CubeAlphabet alphabet = CubeAlphabet.parse("0xD700-0xE0FF");
+        assertEquals(0x100 + 0x100, alphabet.size());
+        assertEquals("U+D700-U+D7FF,U+E000-U+E0FF", alphabet.toString());
+        assertFalse(alphabet.contains(Character.MIN_SURROGATE));
+        assertEquals("U+E000-U+E0FF", CubeAlphabet.parse("0xDC00-0xE0FF").toString());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0xD800-0xDFFF", "0xD800,0xDC00-0xDCFF", "U+DBFF"})
+    void refusesOnlySurrogates(String spec) {
+        assertThrows(IllegalArgumentException.class, () -> CubeAlphabet.parse(spec));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"32-126,100-200", "0x41,0x30-0x5A", "32-126,126", "0x100-0x1FF,0x1FF-0x2FF"})
+    void refusesOverlappingRanges(String spec) {
+        assertThrows(IllegalArgumentException.class, () -> CubeAlphabet.parse(spec));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", " , ", "126-32", "0x110000", "-5", "a-z", "0xZZ"})
+    void refusesMalformedSpecs(String spec) {
+        assertThrows(IllegalArgumentException.class, () -> CubeAlphabet.parse(spec));
+    }
+
+    @Test
+    void adjacentRangesAreNotOverlapping() {
+        assertEquals(0x100, CubeAlphabet.parse("0x80-0xFF,0x100-0x17F").size());
+    }
+}
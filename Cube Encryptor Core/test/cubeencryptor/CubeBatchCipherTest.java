@@ -0,0 +1,141 @@
+package cubeencryptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Batches of records under many key ids, some sharing a raw key, against the original algorithm record by record,
+ * on one thread and sliced across several.
+ */
+class CubeBatchCipherTest {
+    private static final int KEY_IDS = 40;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void encryptsEveryRecordUnderItsOwnKey(int parallelism) {
+        Random random = new Random(21);
+        Map<String, String> keys = keys(random);
+        List<CubeBatchCipher.Record> records = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            records.add(new CubeBatchCipher.Record(keyId(random), Samples.text(random, random.nextInt(30))));
+        }
+        CubeBatchCipher.Result result = run(keys, parallelism, cipher -> cipher.encrypt(records));
+        for (int i = 0; i < records.size(); i++) {
+            CubeBatchCipher.Record record = records.get(i);
+            assertEquals(BaselineCipher.encrypt(record.getPayload(), keys.get(record.getKeyId())),
+                    result.getOutputs().get(i), "record " + i);
+        }
+        assertStats(keys, records, result.getStats());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void decryptsEveryRecordUnderItsOwnKey(int parallelism) {
+        Random random = new Random(22);
+        Map<String, String> keys = keys(random);
+        List<CubeBatchCipher.Record> records = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            records.add(new CubeBatchCipher.Record(keyId(random), Samples.ciphertext(random, random.nextInt(20))));
+        }
+        CubeBatchCipher.Result result = run(keys, parallelism, cipher -> cipher.decrypt(records));
+        for (int i = 0; i < records.size(); i++) {
+            CubeBatchCipher.Record record = records.get(i);
+            assertEquals(BaselineCipher.decrypt(record.getPayload(), keys.get(record.getKeyId())),
+                    result.getOutputs().get(i), "record " + i);
+        }
+        assertStats(keys, records, result.getStats());
+    }
+
+    @Test
+    void asksTheResolverOncePerKeyId() {
+        Random random = new Random(23);
+        Map<String, String> keys = keys(random);
+        AtomicInteger lookups = new AtomicInteger();
+        CubeBatchCipher cipher = new CubeBatchCipher(keyId -> {
+            lookups.incrementAndGet();
+            return keys.get(keyId);
+        });
+        List<CubeBatchCipher.Record> records = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            records.add(new CubeBatchCipher.Record("id" + i % 3, "payload"));
+        }
+        cipher.encrypt(records);
+        assertEquals(3, lookups.get());
+    }
+
+    @Test
+    void refusesUnknownKeyIds() {
+        Map<String, String> keys = keys(new Random(24));
+        CubeBatchCipher cipher = new CubeBatchCipher(keys::get);
+        List<CubeBatchCipher.Record> records = List.of(new CubeBatchCipher.Record("id1", "known"),
+                new CubeBatchCipher.Record("nobody", "unknown"));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> cipher.encrypt(records));
+        assertTrue(e.getMessage().contains("nobody"), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> cipher.decrypt(records));
+    }
+
+    @Test
+    void handlesEmptyBatches() {
+        CubeBatchCipher.Result result = new CubeBatchCipher(keyId -> "key").encrypt(List.of());
+        assertTrue(result.getOutputs().isEmpty());
+        assertEquals(0, result.getStats().getRecords());
+    }
+
+    /**
+     * Raw keys of {@value #KEY_IDS} key ids, each shared by two ids.
+     */
+    private static Map<String, String> keys(Random random) {
+        Map<String, String> keys = new HashMap<>();
+        for (int i = 0; i < KEY_IDS; i += 2) {
+            String key = "key " + i + " " + Samples.key(random);
+            keys.put("id" + i, key);
+            keys.put("id" + (i + 1), key);
+        }
+        return keys;
+    }
+
+    private static String keyId(Random random) {
+        // Skewed, so some groups are large and some hold a record or two
+        return "id" + (int) (KEY_IDS * Math.pow(random.nextDouble(), 3));
+    }
+
+    private static CubeBatchCipher.Result run(Map<String, String> keys, int parallelism,
+            Function<CubeBatchCipher, CubeBatchCipher.Result> batch) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            return batch.apply(new CubeBatchCipher(keys::get, new KeyScheduleCache(8), executor, parallelism));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertStats(Map<String, String> keys, List<CubeBatchCipher.Record> records,
+            CubeBatchCipher.Stats stats) {
+        Set<String> keyIds = new HashSet<>();
+        Set<String> rawKeys = new HashSet<>();
+        for (CubeBatchCipher.Record record : records) {
+            keyIds.add(record.getKeyId());
+            rawKeys.add(keys.get(record.getKeyId()));
+        }
+        assertEquals(records.size(), stats.getRecords());
+        assertEquals(keyIds.size(), stats.getKeyIds());
+        assertEquals(rawKeys.size(), stats.getKeys());
+    }
+}
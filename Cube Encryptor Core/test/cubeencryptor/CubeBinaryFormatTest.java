@@ -0,0 +1,48 @@
+package cubeencryptor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The one-byte-per-symbol format, checked through {@link BaselineCipher}: binary ciphertext must convert to the
+ * text the original encrypt produced, and converted text must decrypt as the original decrypt did. Empty
+ * ciphertext is the one exception: it is the encryption of empty text, not one empty coordinate, so it decrypts
+ * to nothing.
+ */
+class CubeBinaryFormatTest {
+
+    @Test
+    void binaryCiphertextIsTheBaselineCiphertext() {
+        Random random = new Random(10);
+        for (int i = 0; i < Samples.CASES; i++) {
+            String key = Samples.key(random);
+            String text = Samples.text(random, random.nextInt(200));
+            CubeCodec codec = KeySchedule.derive(key).getCodec();
+            byte[] binary = CubeBinaryFormat.encrypt(codec, text);
+            String ciphertext = BaselineCipher.encrypt(text, key);
+            assertEquals(ciphertext, CubeBinaryFormat.toText(binary), "case " + i);
+            assertArrayEquals(binary, CubeBinaryFormat.fromText(ciphertext), "case " + i);
+            String expected = text.isEmpty() ? "" : BaselineCipher.decrypt(ciphertext, key);
+            assertEquals(expected, CubeBinaryFormat.decrypt(codec, binary), "case " + i);
+            assertEquals(CubeBinaryFormat.decrypt(codec, binary),
+                    CubeBinaryFormat.decryptArmored(codec, CubeBinaryFormat.encryptArmored(codec, text)), "case " + i);
+        }
+    }
+
+    @Test
+    void convertedCiphertextDecryptsAsBaseline() {
+        Random random = new Random(11);
+        for (int i = 0; i < Samples.CASES; i++) {
+            String key = Samples.key(random);
+            String ciphertext = Samples.ciphertext(random, random.nextInt(60));
+            String expected = ciphertext.isEmpty() ? "" : BaselineCipher.decrypt(ciphertext, key);
+            CubeCodec codec = KeySchedule.derive(key).getCodec();
+            assertEquals(expected, CubeBinaryFormat.decrypt(codec, CubeBinaryFormat.fromText(ciphertext)),
+                    "case " + i);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package cubeencryptor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * The byte encoder, with and without the Vector API loop, compared with BaselineCipher and the binary
+ * format, on UTF-8 input that mixes ASCII runs with multi-byte characters at every alignment. Surefire adds the
+ * incubator module, so the vector loop runs wherever the JVM has it.
+ */
+class CubeBulkEncoderTest {
+
+    @Test
+    void usesTheVectorApiWhenAvailable() {
+        CubeCodec codec = KeySchedule.derive("key").getCodec();
+        assertEquals(CubeBulkEncoder.isVectorApiAvailable(), new CubeBulkEncoder(codec).isVectorized());
+        assertFalse(new CubeBulkEncoder(codec, false).isVectorized());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void textOutputIsTheBaselineCiphertext(boolean vectorized) {
+        Random random = new Random(12);
+        for (int i = 0; i < Samples.CASES; i++) {
+            String key = Samples.key(random);
+            byte[] utf8 = text(random).getBytes(StandardCharsets.UTF_8);
+            String text = new String(utf8, StandardCharsets.UTF_8);
+            int offset = random.nextInt(9);
+            byte[] encrypted = new CubeBulkEncoder(KeySchedule.derive(key).getCodec(), vectorized)
+                    .encryptText(padded(utf8, offset, random), offset, utf8.length);
+            assertArrayEquals(BaselineCipher.encrypt(text, key).getBytes(StandardCharsets.US_ASCII), encrypted,
+                    "case " + i);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void binaryOutputIsTheBinaryFormat(boolean vectorized) {
+        Random random = new Random(13);
+        for (int i = 0; i < Samples.CASES; i++) {
+            String key = Samples.key(random);
+            byte[] utf8 = text(random).getBytes(StandardCharsets.UTF_8);
+            String text = new String(utf8, StandardCharsets.UTF_8);
+            int offset = random.nextInt(9);
+            CubeCodec codec = KeySchedule.derive(key).getCodec();
+            byte[] encrypted = new CubeBulkEncoder(codec, vectorized).encryptBinary(padded(utf8, offset, random),
+                    offset, utf8.length);
+            assertArrayEquals(CubeBinaryFormat.encrypt(codec, text), encrypted, "case " + i);
+        }
+    }
+
+    /**
+     * Half the time the usual mix, half the time printable ASCII with rare other characters, so that whole
+     * vectors of ASCII come up as well as vectors the vector loop has to turn down.
+     */
+    private static String text(Random random) {
+        int length = random.nextInt(300);
+        if (random.nextBoolean()) {
+            return Samples.text(random, length);
+        }
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append(random.nextInt(100) == 0 ? Samples.text(random, 1) : (char) (32 + random.nextInt(95)));
+        }
+        return text.toString();
+    }
+
+    /**
+     * The bytes at {@code offset} of a larger array, with random ASCII around them that must not be read.
+     */
+    private static byte[] padded(byte[] bytes, int offset, Random random) {
+        byte[] padded = new byte[offset + bytes.length + random.nextInt(9)];
+        for (int i = 0; i < padded.length; i++) {
+            padded[i] = (byte) (32 + random.nextInt(95));
+        }
+        System.arraycopy(bytes, 0, padded, offset, bytes.length);
+        return padded;
+    }
+}
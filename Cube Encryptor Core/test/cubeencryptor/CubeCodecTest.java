@@ -0,0 +1,223 @@
+package cubeencryptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * The lookup-table codec and its in-place ciphertext scanner against the original String algorithm, with
+ * malformed coordinates, empty ones and runs of spaces; code point alphabets and schedules of more than 99 cubes
+ * against the same algorithm generalised in {@link CodePointBaseline}.
+ */
+class CubeCodecTest {
+
+    @Test
+    void encryptMatchesBaseline() {
+        Random random = new Random(1);
+        for (int i = 0; i < Samples.CASES; i++) {
+            String key = Samples.key(random);
+            String text = Samples.text(random, random.nextInt(200));
+            assertEquals(BaselineCipher.encrypt(text, key), KeySchedule.derive(key).getCodec().encrypt(text),
+                    "case " + i);
+        }
+    }
+
+    @Test
+    void decryptMatchesBaseline() {
+        Random random = new Random(2);
+        for (int i = 0; i < Samples.CASES; i++) {
+            String key = Samples.key(random);
+            String ciphertext = i % 2 == 0 ? Samples.ciphertext(random, random.nextInt(60))
+                    : BaselineCipher.encrypt(Samples.text(random, random.nextInt(60)), key);
+            String decrypted = KeySchedule.derive(key).getCodec().decrypt(ciphertext);
+            assertEquals(BaselineCipher.decrypt(ciphertext, key), decrypted, "case " + i);
+        }
+    }
+
+    @Test
+    void byteScannerMatchesBaseline() {
+        Random random = new Random(8);
+        for (int i = 0; i < Samples.CASES; i++) {
+            String key = Samples.key(random);
+            String ciphertext = Samples.ciphertext(random, 1 + random.nextInt(60));
+            // The byte scanner reads ASCII ciphertext; anything else is not a byte-for-char match. An empty text
+            // is decrypt's special case, not the scanner's.
+            if (ciphertext.isEmpty() || !StandardCharsets.US_ASCII.newEncoder().canEncode(ciphertext)) {
+                continue;
+            }
+            byte[] bytes = ciphertext.getBytes(StandardCharsets.US_ASCII);
+            StringBuilder out = new StringBuilder();
+            KeySchedule.derive(key).getCodec().decodeTokens(bytes, 0, bytes.length, out, true, null);
+            assertEquals(BaselineCipher.decrypt(ciphertext, key), out.toString(), "case " + i);
+        }
+    }
+
+    @Test
+    void badTokensAreTheOnesTheBaselineCouldNotRead() {
+        Random random = new Random(9);
+        for (int i = 0; i < Samples.CASES; i++) {
+            String key = Samples.key(random);
+            String ciphertext = Samples.ciphertext(random, random.nextInt(60));
+            // The same cubes with '?' on two different faces: only an unreadable coordinate is '?' under both
+            String questionFirst = "?" + key;
+            String questionSecond = "!?" + key;
+            List<Integer> expected = new ArrayList<>();
+            int offset = 0;
+            for (String token : ciphertext.split(" ")) {
+                if (BaselineCipher.decrypt(token, questionFirst).equals("?")
+                        && BaselineCipher.decrypt(token, questionSecond).equals("?")) {
+                    expected.add(offset);
+                }
+                offset += token.length() + 1;
+            }
+            List<Integer> reported = new ArrayList<>();
+            KeySchedule.derive(key).getCodec().decrypt(ciphertext, reported::add);
+            assertEquals(expected, reported, "case " + i);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"0x20-0x7E,0xA0-0x17F", "0x1F600-0x1F64F,32-126,0x3040-0x30FF", "0x10000-0x100FF"})
+    void codePointAlphabetsMatchBaseline(String spec) {
+        CubeAlphabet alphabet = CubeAlphabet.parse(spec);
+        Random random = new Random(spec.hashCode());
+        for (int i = 0; i < Samples.CASES / 10; i++) {
+            String key = codePointText(random, alphabet, random.nextInt(40));
+            String text = codePointText(random, alphabet, random.nextInt(100));
+            CubeCodec codec = KeySchedule.derive(key, alphabet).getCodec();
+            String ciphertext = codec.encrypt(text);
+            assertEquals(CodePointBaseline.encrypt(text, key, alphabet), ciphertext, "case " + i);
+            assertEquals(CodePointBaseline.decrypt(ciphertext, key, alphabet), codec.decrypt(ciphertext),
+                    "case " + i);
+        }
+    }
+
+    @Test
+    void supplementaryCharactersAreOneSymbol() {
+        CubeAlphabet alphabet = CubeAlphabet.parse("0x1F600-0x1F64F");
+        CubeCodec codec = KeySchedule.derive("\uD83D\uDE00", alphabet).getCodec();
+        assertTrue(codec.isCodePointMode());
+        assertEquals("01L1 01C1", codec.encrypt("\uD83D\uDE00\uD83D\uDE01"));
+        assertEquals("\uD83D\uDE00\uD83D\uDE01", codec.decrypt("01L1 01C1"));
+        // A lone surrogate is not in the alphabet
+        assertEquals("??", codec.encrypt("\uD83D"));
+    }
+
+    @Test
+    void wideCodePointSchedulesMatchBaseline() {
+        // 512 CJK symbols and printable ASCII: 102 cubes
+        CubeAlphabet alphabet = CubeAlphabet.parse("0x4E00-0x4FFF,32-126");
+        Random random = new Random(15);
+        for (int i = 0; i < Samples.CASES / 30; i++) {
+            String key = codePointText(random, alphabet, random.nextInt(40));
+            String text = codePointText(random, alphabet, random.nextInt(100));
+            CubeCodec codec = KeySchedule.derive(key, alphabet).getCodec();
+            assertEquals(102, codec.getCubeCount());
+            assertEquals(5, codec.getCoordinateLength());
+            String ciphertext = codec.encrypt(text);
+            assertEquals(CodePointBaseline.encrypt(text, key, alphabet), ciphertext, "case " + i);
+            assertEquals(CodePointBaseline.decrypt(ciphertext, key, alphabet), codec.decrypt(ciphertext),
+                    "case " + i);
+        }
+    }
+
+    @Test
+    void wideLegacySchedulesMatchBaseline() {
+        // The legacy alphabet only passes 99 cubes with a key of more than 500 distinct other chars
+        Random random = new Random(16);
+        for (int i = 0; i < Samples.CASES / 30; i++) {
+            String key = wideLegacyKey(random);
+            String text = key.substring(0, random.nextInt(100)) + Samples.text(random, random.nextInt(50));
+            CubeCodec codec = KeySchedule.derive(key).getCodec();
+            assertTrue(codec.getCubeCount() > 99, "case " + i);
+            String ciphertext = codec.encrypt(text);
+            assertEquals(CodePointBaseline.encrypt(text, key, CubeAlphabet.PRINTABLE_ASCII), ciphertext, "case " + i);
+            assertEquals(CodePointBaseline.decrypt(ciphertext, key, CubeAlphabet.PRINTABLE_ASCII),
+                    codec.decrypt(ciphertext), "case " + i);
+        }
+    }
+
+    @Test
+    void wideLegacySchedulesDecryptTheOriginalCiphertext() {
+        // The original wrote "01L1" up to cube 99 and "100L1" from there on
+        Random random = new Random(17);
+        for (int i = 0; i < Samples.CASES / 30; i++) {
+            String key = wideLegacyKey(random);
+            StringBuilder text = new StringBuilder();
+            for (int k = 1 + random.nextInt(200); k > 0; k--) {
+                text.append(random.nextBoolean() ? key.charAt(random.nextInt(key.length()))
+                        : (char) (32 + random.nextInt(95)));
+            }
+            String original = BaselineCipher.encrypt(text.toString(), key);
+            String decrypted = KeySchedule.derive(key).getCodec().decrypt(original);
+            assertEquals(text.toString(), decrypted, "case " + i);
+            // Wherever the original could read its own ciphertext, both agree
+            String originalDecrypted = BaselineCipher.decrypt(original, key);
+            for (int k = 0; k < decrypted.length(); k++) {
+                if (originalDecrypted.charAt(k) != '?') {
+                    assertEquals(originalDecrypted.charAt(k), decrypted.charAt(k), "case " + i + " at " + k);
+                }
+            }
+        }
+    }
+
+    @Test
+    void twoDigitCoordinatesReadOnlyInWideLegacySchedules() {
+        CubeCodec legacy = KeySchedule.derive(wideLegacyKey(new Random(18))).getCodec();
+        assertEquals(5, legacy.getCoordinateLength());
+        String first = legacy.decrypt("001L1");
+        assertEquals(first, legacy.decrypt("01L1"));
+        assertEquals(first, legacy.decrypt("+1L1"));
+        assertEquals(legacy.decrypt("099R2"), legacy.decrypt("99R2"));
+        StringBuilder bytesOut = new StringBuilder();
+        byte[] bytes = "01L1 001L1".getBytes(StandardCharsets.US_ASCII);
+        legacy.decodeTokens(bytes, 0, bytes.length, bytesOut, true, null);
+        assertEquals(first + first, bytesOut.toString());
+        assertEquals("?", legacy.decrypt("1L1"));
+
+        CubeCodec codePoints = KeySchedule.derive("", CubeAlphabet.parse("0x4E00-0x4FFF,32-126")).getCodec();
+        assertEquals("?", codePoints.decrypt("01L1"));
+        assertEquals("\u4E00", codePoints.decrypt("001L1"));
+        assertEquals("?", codePoints.decrypt("103L1"));
+    }
+
+    /**
+     * A legacy key of 600 CJK chars, most of them distinct, which puts the schedule past 99 cubes.
+     */
+    private static String wideLegacyKey(Random random) {
+        StringBuilder key = new StringBuilder();
+        for (int k = 0; k < 600; k++) {
+            key.append((char) (0x4E00 + random.nextInt(0x4000)));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Symbols of the alphabet with some outside it: supplementary characters, Latin-1 and control characters.
+     */
+    private static String codePointText(Random random, CubeAlphabet alphabet, int length) {
+        int[] inAlphabet = new int[alphabet.size()];
+        for (int range = 0, k = 0; range < alphabet.rangeCount(); range++) {
+            for (int symbol = alphabet.rangeStart(range); symbol <= alphabet.rangeEnd(range); symbol++) {
+                inAlphabet[k++] = symbol;
+            }
+        }
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(10) == 0) {
+                text.appendCodePoint(random.nextBoolean() ? 0x10000 + random.nextInt(0x1000) : random.nextInt(0x180));
+            } else {
+                text.appendCodePoint(inAlphabet[random.nextInt(inAlphabet.length)]);
+            }
+        }
+        return text.toString();
+    }
+}
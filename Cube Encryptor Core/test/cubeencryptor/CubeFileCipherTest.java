@@ -0,0 +1,56 @@
+package cubeencryptor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Memory-mapped files must hold what BaselineCipher makes of their decoded text. Windows of a few bytes put
+ * window edges inside multi-byte characters and give many windows per file. An output that is the input is
+ * refused.
+ */
+class CubeFileCipherTest {
+    private static final int FILE_CASES = 300;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void outputFileIsTheBaselineCiphertext() throws IOException {
+        Random random = new Random(14);
+        Path input = directory.resolve("plain.txt");
+        Path output = directory.resolve("plain.txt.cube");
+        for (int i = 0; i < FILE_CASES; i++) {
+            String key = Samples.key(random);
+            byte[] utf8 = Samples.text(random, random.nextInt(2000)).getBytes(StandardCharsets.UTF_8);
+            Files.write(input, utf8);
+            long size = CubeFileCipher.encrypt(KeySchedule.derive(key).getCodec(), input, output,
+                    1 + random.nextInt(4), 1 + random.nextInt(64));
+            byte[] expected = BaselineCipher.encrypt(new String(utf8, StandardCharsets.UTF_8), key)
+                    .getBytes(StandardCharsets.US_ASCII);
+            assertEquals(expected.length, size, "case " + i);
+            assertArrayEquals(expected, Files.readAllBytes(output), "case " + i);
+        }
+    }
+
+    @Test
+    void refusesWritingOverItsInput() throws IOException {
+        Path input = directory.resolve("plain.txt");
+        Files.writeString(input, "keep");
+        CubeCodec codec = KeySchedule.derive("key").getCodec();
+        assertThrows(IllegalArgumentException.class, () -> CubeFileCipher.encrypt(codec, input, input, 1, 64));
+        // The same file under another name
+        Path alias = directory.resolve(".").resolve("plain.txt");
+        assertThrows(IllegalArgumentException.class, () -> CubeFileCipher.encrypt(codec, input, alias, 1, 64));
+        assertEquals("keep", Files.readString(input));
+    }
+}
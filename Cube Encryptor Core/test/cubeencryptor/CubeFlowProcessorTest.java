@@ -0,0 +1,259 @@
+package cubeencryptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The processor between a {@link SubmissionPublisher} and a recording subscriber, and driven signal by signal on
+ * the calling thread to check its demand towards both sides and how it terminates.
+ */
+class CubeFlowProcessorTest {
+    private static final CubeCodec CODEC = KeySchedule.derive("flow key").getCodec();
+    // Runs drain tasks on the signalling thread, so every assertion sees their effect
+    private static final Executor INLINE = Runnable::run;
+
+    @Test
+    void encryptsAndDecryptsEveryMessageInOrder() throws InterruptedException {
+        Random random = new Random(23);
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            messages.add(Samples.text(random, random.nextInt(40)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        SubmissionPublisher<String> publisher = new SubmissionPublisher<>(executor, 16);
+        try {
+            CubeFlowProcessor encryptor = CubeFlowProcessor.encryptor(CODEC, executor, 32);
+            CubeFlowProcessor decryptor = CubeFlowProcessor.decryptor(CODEC, executor, 8);
+            // Asks in small batches, so demand runs out again and again along the chain
+            Recorder recorder = new Recorder(7) {
+                @Override
+                public void onNext(String item) {
+                    super.onNext(item);
+                    if (items.size() % 7 == 0) {
+                        subscription.request(7);
+                    }
+                }
+            };
+            publisher.subscribe(encryptor);
+            encryptor.subscribe(decryptor);
+            decryptor.subscribe(recorder);
+            for (String message : messages) {
+                publisher.submit(message);
+            }
+            // Closing ends the stream; closing again in finally does nothing
+            publisher.close();
+            assertTrue(recorder.terminated.await(30, TimeUnit.SECONDS));
+            assertTrue(recorder.completed);
+            assertEquals(messages.size(), recorder.items.size());
+            for (int i = 0; i < messages.size(); i++) {
+                assertEquals(CODEC.decrypt(CODEC.encrypt(messages.get(i))), recorder.items.get(i), "message " + i);
+            }
+        } finally {
+            publisher.close();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void passesOnOnlyWhatDownstreamRequested() {
+        CubeFlowProcessor processor = CubeFlowProcessor.encryptor(CODEC, INLINE, 8);
+        Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+        assertEquals(8, upstream.requested);
+        Recorder recorder = new Recorder(0);
+        processor.subscribe(recorder);
+        for (int i = 0; i < 8; i++) {
+            processor.onNext("m" + i);
+        }
+        assertEquals(0, recorder.items.size());
+        recorder.subscription.request(3);
+        assertEquals(List.of(CODEC.encrypt("m0"), CODEC.encrypt("m1"), CODEC.encrypt("m2")), recorder.items);
+        assertEquals(8, upstream.requested);
+    }
+
+    @Test
+    void replenishesUpstreamAtThreeQuarters() {
+        CubeFlowProcessor processor = CubeFlowProcessor.encryptor(CODEC, INLINE, 8);
+        Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+        Recorder recorder = new Recorder(0);
+        processor.subscribe(recorder);
+        int sent = 0;
+        for (int round = 1; round <= 20; round++) {
+            // Upstream sends all it was asked for; the buffer must never hold more than its size
+            while (sent < upstream.requested) {
+                processor.onNext("m" + sent++);
+                assertTrue(sent - recorder.items.size() <= 8, "buffered " + (sent - recorder.items.size()));
+            }
+            recorder.subscription.request(5);
+            // Six of eight passed on: upstream is asked for six more, never before
+            assertEquals(8 + recorder.items.size() / 6 * 6, upstream.requested, "round " + round);
+        }
+        // Downstream asked for more than upstream sent, so everything was passed on
+        assertEquals(sent, recorder.items.size());
+    }
+
+    @Test
+    void stopsOnCancel() {
+        CubeFlowProcessor processor = CubeFlowProcessor.encryptor(CODEC, INLINE, 8);
+        Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+        processor.subscribe(recorder);
+        processor.onNext("before");
+        recorder.subscription.cancel();
+        assertTrue(upstream.cancelled);
+        processor.onNext("after");
+        processor.onComplete();
+        assertEquals(List.of(CODEC.encrypt("before")), recorder.items);
+        assertFalse(recorder.completed);
+        assertNull(recorder.error);
+        assertEquals(1, recorder.terminated.getCount());
+    }
+
+    @Test
+    void deliversAnEarlyErrorAfterTheBufferedMessages() {
+        CubeFlowProcessor processor = CubeFlowProcessor.encryptor(CODEC, INLINE, 8);
+        processor.onSubscribe(new Upstream());
+        processor.onNext("buffered");
+        RuntimeException failure = new RuntimeException("upstream failed");
+        processor.onError(failure);
+        Recorder recorder = new Recorder(0);
+        processor.subscribe(recorder);
+        assertNull(recorder.error);
+        recorder.subscription.request(1);
+        assertEquals(List.of(CODEC.encrypt("buffered")), recorder.items);
+        assertSame(failure, recorder.error);
+    }
+
+    @Test
+    void deliversAnEarlyErrorWithoutDemand() {
+        CubeFlowProcessor processor = CubeFlowProcessor.decryptor(CODEC, INLINE, 8);
+        processor.onSubscribe(new Upstream());
+        RuntimeException failure = new RuntimeException("upstream failed");
+        processor.onError(failure);
+        Recorder recorder = new Recorder(0);
+        processor.subscribe(recorder);
+        assertSame(failure, recorder.error);
+    }
+
+    @Test
+    void failsOnNonPositiveRequests() {
+        CubeFlowProcessor processor = CubeFlowProcessor.encryptor(CODEC, INLINE, 8);
+        Upstream upstream = new Upstream();
+        processor.onSubscribe(upstream);
+        Recorder recorder = new Recorder(0);
+        processor.subscribe(recorder);
+        recorder.subscription.request(0);
+        assertInstanceOf(IllegalArgumentException.class, recorder.error);
+        assertTrue(upstream.cancelled);
+    }
+
+    @Test
+    void refusesASecondSubscriber() {
+        CubeFlowProcessor processor = CubeFlowProcessor.encryptor(CODEC, INLINE, 8);
+        processor.subscribe(new Recorder(0));
+        Recorder second = new Recorder(0);
+        processor.subscribe(second);
+        assertInstanceOf(IllegalStateException.class, second.error);
+    }
+
+    @Test
+    void callsOnSubscribeWithoutHoldingALock() throws InterruptedException {
+        CubeFlowProcessor processor = CubeFlowProcessor.encryptor(CODEC, INLINE, 8);
+        Recorder second = new Recorder(0);
+        Thread other = new Thread(() -> processor.subscribe(second));
+        processor.subscribe(new Recorder(0) {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                super.onSubscribe(subscription);
+                // Another thread subscribing meanwhile must not wait for this call to return
+                other.start();
+                try {
+                    other.join(10_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertFalse(other.isAlive());
+        assertInstanceOf(IllegalStateException.class, second.error);
+    }
+
+    /**
+     * Upstream subscription that records the demand it was given.
+     */
+    private static final class Upstream implements Flow.Subscription {
+        long requested;
+        boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Subscriber that records every signal, requesting {@code initialDemand} when subscribed.
+     */
+    private static class Recorder implements Flow.Subscriber<String> {
+        final List<String> items = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch terminated = new CountDownLatch(1);
+        private final long initialDemand;
+        volatile Flow.Subscription subscription;
+        volatile boolean completed;
+        volatile Throwable error;
+
+        Recorder(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialDemand > 0) {
+                subscription.request(initialDemand);
+            }
+        }
+
+        @Override
+        public void onNext(String item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            terminated.countDown();
+        }
+    }
+}
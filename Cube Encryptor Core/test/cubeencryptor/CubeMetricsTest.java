@@ -0,0 +1,99 @@
+package cubeencryptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Histogram buckets and percentiles on exact durations, and the recording switch around the real clock.
+ */
+class CubeMetricsTest {
+
+    @AfterEach
+    void restoreDefaults() {
+        CubeMetrics.setEnabled(false);
+        CubeMetrics.reset();
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0, 0", "1, 1", "2, 3", "3, 3", "4, 7", "1000, 1023", "1024, 2047", "-5, 0",
+            "4611686018427387903, 4611686018427387903", "4611686018427387904, 9223372036854775807",
+            "9223372036854775807, 9223372036854775807"})
+    void bucketsDurationsByPowersOfTwo(long nanos, long upperBound) {
+        CubeMetrics.Histogram histogram = new CubeMetrics.Histogram();
+        histogram.record(nanos, 1);
+        assertEquals(upperBound, histogram.snapshot().getPercentileNanos(100));
+    }
+
+    @Test
+    void boundsPercentilesByTheirBucket() {
+        CubeMetrics.Histogram histogram = new CubeMetrics.Histogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(100, 10);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(10_000, 10);
+        }
+        histogram.record(1_000_000, 10);
+        CubeMetrics.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(1000, snapshot.getCharacters());
+        assertEquals(90 * 100 + 9 * 10_000 + 1_000_000, snapshot.getTotalNanos());
+        assertEquals(10_990.0, snapshot.getMeanNanos());
+        assertEquals(127, snapshot.getPercentileNanos(0));
+        assertEquals(127, snapshot.getPercentileNanos(50));
+        assertEquals(127, snapshot.getPercentileNanos(90));
+        assertEquals(16_383, snapshot.getPercentileNanos(90.5));
+        assertEquals(16_383, snapshot.getPercentileNanos(99));
+        assertEquals(1_048_575, snapshot.getPercentileNanos(99.5));
+        assertEquals(1_048_575, snapshot.getPercentileNanos(100));
+        // Out-of-range percentiles are clamped
+        assertEquals(127, snapshot.getPercentileNanos(-1));
+        assertEquals(1_048_575, snapshot.getPercentileNanos(150));
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getPercentileNanos(50));
+        assertEquals(0.0, histogram.snapshot().getMeanNanos());
+    }
+
+    @Test
+    void recordsNothingWhileDisabled() {
+        assertFalse(CubeMetrics.isEnabled());
+        long start = CubeMetrics.start();
+        assertEquals(0, start);
+        CubeMetrics.record(CubeMetrics.Operation.SERVICE_REQUEST, start, 10);
+        KeySchedule.derive("disabled");
+        assertEquals(0, CubeMetrics.snapshot(CubeMetrics.Operation.SERVICE_REQUEST).getCount());
+        assertEquals(0, CubeMetrics.snapshot(CubeMetrics.Operation.KEY_DERIVATION).getCount());
+
+        // An operation that started while recording was off is not recorded once it is on
+        CubeMetrics.setEnabled(true);
+        CubeMetrics.record(CubeMetrics.Operation.SERVICE_REQUEST, start, 10);
+        assertEquals(0, CubeMetrics.snapshot(CubeMetrics.Operation.SERVICE_REQUEST).getCount());
+    }
+
+    @Test
+    void recordsWhileEnabled() {
+        CubeMetrics.setEnabled(true);
+        long start = CubeMetrics.start();
+        assertNotEquals(0, start);
+        CubeMetrics.record(CubeMetrics.Operation.SERVICE_REQUEST, start, 10);
+        KeySchedule.derive("enabled");
+        CubeMetrics.Snapshot requests = CubeMetrics.snapshot(CubeMetrics.Operation.SERVICE_REQUEST);
+        assertEquals(1, requests.getCount());
+        assertEquals(10, requests.getCharacters());
+        CubeMetrics.Snapshot derivations = CubeMetrics.snapshot(CubeMetrics.Operation.KEY_DERIVATION);
+        assertEquals(1, derivations.getCount());
+        assertEquals("enabled".length(), derivations.getCharacters());
+
+        CubeMetrics.reset();
+        assertEquals(0, CubeMetrics.snapshot(CubeMetrics.Operation.SERVICE_REQUEST).getCount());
+    }
+}
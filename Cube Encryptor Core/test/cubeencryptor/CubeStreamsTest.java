@@ -0,0 +1,100 @@
+package cubeencryptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Streamed ciphertext and plaintext must equal what BaselineCipher gives for the whole text, whatever sizes the reads
+ * come in.
+ */
+class CubeStreamsTest {
+
+    @Test
+    void readerEncryptMatchesBaseline() throws IOException {
+        Random random = new Random(3);
+        for (int i = 0; i < Samples.CASES; i++) {
+            String key = Samples.key(random);
+            String text = Samples.text(random, length(random));
+            StringWriter out = new StringWriter();
+            CubeStreams.encrypt(KeySchedule.derive(key).getCodec(), new ChoppyReader(text, random), out);
+            assertEquals(BaselineCipher.encrypt(text, key), out.toString(), "case " + i);
+        }
+    }
+
+    @Test
+    void readerDecryptMatchesBaseline() throws IOException {
+        Random random = new Random(4);
+        for (int i = 0; i < Samples.CASES; i++) {
+            String key = Samples.key(random);
+            String ciphertext = i % 2 == 0 ? Samples.ciphertext(random, length(random))
+                    : BaselineCipher.encrypt(Samples.text(random, length(random)), key);
+            StringWriter out = new StringWriter();
+            CubeStreams.decrypt(KeySchedule.derive(key).getCodec(), new ChoppyReader(ciphertext, random), out);
+            assertEquals(BaselineCipher.decrypt(ciphertext, key), out.toString(), "case " + i);
+        }
+    }
+
+    @Test
+    void byteStreamsMatchBaseline() throws IOException {
+        Random random = new Random(5);
+        for (int i = 0; i < Samples.CASES; i++) {
+            String key = Samples.key(random);
+            CubeCodec codec = KeySchedule.derive(key).getCodec();
+            byte[] utf8 = Samples.text(random, length(random)).getBytes(StandardCharsets.UTF_8);
+            // Lone surrogates do not survive UTF-8, so the reference is the text as the stream decodes it
+            String text = new String(utf8, StandardCharsets.UTF_8);
+            ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+            CubeStreams.encrypt(codec, new ByteArrayInputStream(utf8), encrypted, StandardCharsets.UTF_8);
+            String ciphertext = encrypted.toString(StandardCharsets.UTF_8);
+            assertEquals(BaselineCipher.encrypt(text, key), ciphertext, "case " + i);
+
+            ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+            CubeStreams.decrypt(codec, new ByteArrayInputStream(encrypted.toByteArray()), decrypted,
+                    StandardCharsets.UTF_8);
+            // Keys may put lone surrogates on the cubes, which come out of the encoder as '?' as well
+            String expected = new String(BaselineCipher.decrypt(ciphertext, key).getBytes(StandardCharsets.UTF_8),
+                    StandardCharsets.UTF_8);
+            assertEquals(expected, decrypted.toString(StandardCharsets.UTF_8), "case " + i);
+        }
+    }
+
+    /**
+     * Mostly short inputs, with every tenth one spanning several stream buffers.
+     */
+    private static int length(Random random) {
+        return random.nextInt(10) == 0 ? random.nextInt(3 * CubeStreams.DEFAULT_BUFFER_SIZE) : random.nextInt(60);
+    }
+
+    /**
+     * Hands out the text in random short reads, so buffer ends fall inside coordinates and surrogate pairs.
+     */
+    private static final class ChoppyReader extends Reader {
+        private final StringReader text;
+        private final Random random;
+
+        ChoppyReader(String text, Random random) {
+            this.text = new StringReader(text);
+            this.random = random;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return text.read(buffer, offset, Math.min(length, 1 + random.nextInt(4000)));
+        }
+
+        @Override
+        public void close() {
+            text.close();
+        }
+    }
+}
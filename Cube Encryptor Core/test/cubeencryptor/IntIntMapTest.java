@@ -0,0 +1,68 @@
+package cubeencryptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The open-addressing map against {@link HashMap}, grown well past its expected size and with keys that collide
+ * after hashing.
+ */
+class IntIntMapTest {
+
+    @Test
+    void matchesHashMap() {
+        Random random = new Random(14);
+        for (int i = 0; i < 200; i++) {
+            IntIntMap map = new IntIntMap(random.nextInt(8));
+            Map<Integer, Integer> expected = new HashMap<>();
+            // Small key ranges make repeated keys, multiples of the table size make probe chains
+            int bound = 1 + random.nextInt(5000);
+            int stride = random.nextBoolean() ? 1 : 1 << random.nextInt(20);
+            for (int k = 0; k < 3000; k++) {
+                int key = (random.nextInt(bound) - bound / 2) * stride;
+                if (key == Integer.MIN_VALUE) {
+                    continue;
+                }
+                int value = random.nextInt(Integer.MAX_VALUE);
+                assertEquals(expected.putIfAbsent(key, value) == null, map.putIfAbsent(key, value), "case " + i);
+            }
+            assertEquals(expected.size(), map.size(), "case " + i);
+            for (int k = -bound; k <= bound; k++) {
+                int key = k * stride;
+                assertEquals(expected.getOrDefault(key, -1), map.get(key), "case " + i);
+                assertEquals(expected.containsKey(key), map.containsKey(key), "case " + i);
+            }
+        }
+    }
+
+    @Test
+    void growsFromTheSmallestTable() {
+        IntIntMap map = new IntIntMap(0);
+        for (int key = 0; key < 100_000; key++) {
+            assertTrue(map.putIfAbsent(key, key));
+        }
+        assertFalse(map.putIfAbsent(42, 0));
+        assertEquals(100_000, map.size());
+        for (int key = 0; key < 100_000; key++) {
+            assertEquals(key, map.get(key));
+        }
+        assertEquals(-1, map.get(100_000));
+    }
+
+    @Test
+    void refusesTheFreeMarkerAndNegativeValues() {
+        IntIntMap map = new IntIntMap(4);
+        assertThrows(IllegalArgumentException.class, () -> map.putIfAbsent(Integer.MIN_VALUE, 0));
+        assertThrows(IllegalArgumentException.class, () -> map.putIfAbsent(1, -1));
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get(Integer.MIN_VALUE));
+    }
+}
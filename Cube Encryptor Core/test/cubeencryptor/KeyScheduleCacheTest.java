@@ -0,0 +1,56 @@
+package cubeencryptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Cached schedules against derived ones, eviction order, and the lookup of keys that are already sanitized.
+ */
+class KeyScheduleCacheTest {
+
+    @Test
+    void cachesTheDerivedSchedule() {
+        KeyScheduleCache cache = new KeyScheduleCache(4);
+        KeySchedule schedule = cache.get("raw key");
+        assertEquals(KeySchedule.sanitize("raw key"), schedule.getSanitizedKey());
+        assertSame(schedule, cache.get("raw key"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedKey() {
+        KeyScheduleCache cache = new KeyScheduleCache(2);
+        KeySchedule a = cache.get("a");
+        cache.get("b");
+        cache.get("a");
+        cache.get("c");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        // "b" went, not the more recently used "a"
+        assertSame(a, cache.get("a"));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    void looksUpSanitizedKeysOnly() {
+        KeyScheduleCache cache = new KeyScheduleCache(4);
+        assertNull(cache.getIfSanitized("raw key"));
+        assertEquals(0, cache.size());
+
+        String sanitized = KeySchedule.sanitize("raw key");
+        KeySchedule schedule = cache.getIfSanitized(sanitized);
+        assertEquals(sanitized, schedule.getSanitizedKey());
+        assertSame(schedule, cache.getIfSanitized(sanitized));
+        assertSame(schedule, cache.get(sanitized));
+        assertEquals(1, cache.size());
+
+        // A raw key cached under itself is not mistaken for a sanitized one
+        cache.get("raw key");
+        assertNull(cache.getIfSanitized("raw key"));
+    }
+}
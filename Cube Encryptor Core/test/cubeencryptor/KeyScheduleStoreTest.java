@@ -0,0 +1,169 @@
+package cubeencryptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Stored schedules against derived ones for every symbol width, the masking of the face tables, and stores that
+ * are truncated or corrupt.
+ */
+class KeyScheduleStoreTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void storedSchedulesAreTheDerivedOnes() throws IOException {
+        Random random = new Random(19);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            keys.add(Samples.key(random));
+        }
+        // Repeated keys are stored once
+        keys.add(keys.get(0));
+        assertRoundTrip(CubeAlphabet.PRINTABLE_ASCII, keys, random);
+    }
+
+    @Test
+    void storedCodePointSchedulesAreTheDerivedOnes() throws IOException {
+        Random random = new Random(20);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            keys.add(Samples.key(random) + new String(Character.toChars(0x1F600 + random.nextInt(80))));
+        }
+        // One byte, two byte and four byte symbols
+        assertRoundTrip(CubeAlphabet.parse("32-126,0xA0-0xFF"), keys, random);
+        assertRoundTrip(CubeAlphabet.parse("32-126,0x3040-0x30FF"), keys, random);
+        assertRoundTrip(CubeAlphabet.parse("32-126,0x1F600-0x1F64F"), keys, random);
+    }
+
+    @Test
+    void masksTheFaceTables() throws IOException {
+        Path file = dir.resolve("store");
+        KeyScheduleStore.write(file, CubeAlphabet.PRINTABLE_ASCII, List.of("Unmistakable"));
+        String contents = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+        assertFalse(contents.contains("Unmistakable"));
+        assertFalse(contents.contains(KeySchedule.sanitize("Unmistakable")));
+    }
+
+    @Test
+    void refusesEveryTruncation() throws IOException {
+        Path file = dir.resolve("store");
+        KeyScheduleStore.write(file, CubeAlphabet.PRINTABLE_ASCII, List.of("first", "second", "third"));
+        byte[] bytes = Files.readAllBytes(file);
+        for (int length = 0; length < bytes.length; length++) {
+            Path truncated = dir.resolve("truncated " + length);
+            Files.write(truncated, Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> KeyScheduleStore.open(truncated), "length " + length);
+        }
+    }
+
+    @Test
+    void refusesOtherFiles() throws IOException {
+        Path file = dir.resolve("other");
+        Files.writeString(file, "not a key schedule store at all");
+        assertThrows(IOException.class, () -> KeyScheduleStore.open(file));
+    }
+
+    @Test
+    void refusesAnIndexOutOfOrder() throws IOException {
+        Path file = dir.resolve("store");
+        KeyScheduleStore.write(file, CubeAlphabet.PRINTABLE_ASCII, List.of("first", "second"));
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        // The first fingerprint becomes the largest there is
+        for (int i = 0; i < 16; i++) {
+            bytes.put(indexOffset(bytes) + i, (byte) 0xFF);
+        }
+        Path unordered = dir.resolve("unordered");
+        Files.write(unordered, bytes.array());
+        assertThrows(IOException.class, () -> KeyScheduleStore.open(unordered));
+    }
+
+    @Test
+    void refusesRecordsOutsideTheFile() throws IOException {
+        Path file = dir.resolve("store");
+        KeyScheduleStore.write(file, CubeAlphabet.PRINTABLE_ASCII, List.of("key"));
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        int entry = indexOffset(bytes) + 16;
+        bytes.putLong(entry, bytes.getLong(entry) + 1);
+        Path shifted = dir.resolve("shifted");
+        Files.write(shifted, bytes.array());
+        assertThrows(IOException.class, () -> KeyScheduleStore.open(shifted));
+
+        bytes.putLong(entry, bytes.getLong(entry) - 1);
+        bytes.putInt(entry + Long.BYTES, Integer.MAX_VALUE);
+        Path overlong = dir.resolve("overlong");
+        Files.write(overlong, bytes.array());
+        assertThrows(IOException.class, () -> KeyScheduleStore.open(overlong));
+    }
+
+    @Test
+    void refusesACorruptRecordHeader() throws IOException {
+        Path file = dir.resolve("store");
+        KeyScheduleStore.write(file, CubeAlphabet.PRINTABLE_ASCII, List.of("key"));
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        int offset = (int) bytes.getLong(indexOffset(bytes) + 16);
+        // A new file for every variant, since some platforms cannot rewrite a file that is still mapped
+        for (byte width : new byte[] {0, 3, 4, -1}) {
+            bytes.put(offset, width);
+            Path corrupt = dir.resolve("width " + width);
+            Files.write(corrupt, bytes.array());
+            KeyScheduleStore store = KeyScheduleStore.open(corrupt);
+            UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> store.get("key"));
+            assertTrue(e.getMessage().contains("Corrupt"), e.getMessage());
+        }
+        bytes.put(offset, (byte) 1);
+        bytes.putInt(offset + 1, 1000);
+        Path corrupt = dir.resolve("key length");
+        Files.write(corrupt, bytes.array());
+        KeyScheduleStore store = KeyScheduleStore.open(corrupt);
+        assertThrows(UncheckedIOException.class, () -> store.get("key"));
+    }
+
+    private void assertRoundTrip(CubeAlphabet alphabet, List<String> keys, Random random) throws IOException {
+        Path file = dir.resolve(alphabet.toString());
+        KeyScheduleStore.write(file, alphabet, keys);
+        KeyScheduleStore store = KeyScheduleStore.open(file);
+        assertEquals(alphabet, store.getAlphabet());
+        assertEquals(keys.stream().distinct().count(), store.size());
+        for (String key : keys) {
+            KeySchedule stored = store.get(key);
+            KeySchedule derived = KeySchedule.derive(key, alphabet);
+            assertEquals(derived.getSanitizedKey(), stored.getSanitizedKey(), key);
+            assertEquals(derived.getCubes().size(), stored.getCubes().size(), key);
+            String text = Samples.text(random, 100);
+            assertEquals(derived.getCodec().encrypt(text), stored.getCodec().encrypt(text), key);
+            String ciphertext = derived.getCodec().encrypt(text);
+            assertEquals(derived.getCodec().decrypt(ciphertext), stored.getCodec().decrypt(ciphertext), key);
+            assertSame(stored, store.get(key));
+            assertTrue(store.contains(key));
+        }
+        assertNull(store.get("not stored"));
+        assertFalse(store.contains("not stored"));
+    }
+
+    /**
+     * Offset of the first index entry: past the magic, version, salt, alphabet spec and record count.
+     */
+    private static int indexOffset(ByteBuffer store) {
+        int specLength = store.getInt(2 * Integer.BYTES + 16);
+        return 2 * Integer.BYTES + 16 + Integer.BYTES + specLength + Integer.BYTES;
+    }
+}
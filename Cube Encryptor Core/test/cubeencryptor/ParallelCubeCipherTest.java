@@ -0,0 +1,123 @@
+package cubeencryptor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Which inputs go to the executor and how many chunks they become, and chunked output against the original
+ * cipher. Thresholds in the differential cases are tiny, so chunk edges fall inside coordinates, runs of spaces
+ * and surrogate pairs.
+ */
+class ParallelCubeCipherTest {
+    private static final int THREADS = 4;
+    private static ExecutorService executor;
+
+    @BeforeAll
+    static void startExecutor() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterAll
+    static void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void encryptMatchesBaseline() {
+        Random random = new Random(6);
+        for (int i = 0; i < Samples.CASES; i++) {
+            String key = Samples.key(random);
+            String text = Samples.text(random, random.nextInt(400));
+            String encrypted = cipher(random).encrypt(KeySchedule.derive(key).getCodec(), text);
+            assertEquals(BaselineCipher.encrypt(text, key), encrypted, "case " + i);
+        }
+    }
+
+    @Test
+    void decryptMatchesBaseline() {
+        Random random = new Random(7);
+        for (int i = 0; i < Samples.CASES; i++) {
+            String key = Samples.key(random);
+            String ciphertext = i % 2 == 0 ? Samples.ciphertext(random, random.nextInt(100))
+                    : BaselineCipher.encrypt(Samples.text(random, random.nextInt(100)), key);
+            String decrypted = cipher(random).decrypt(KeySchedule.derive(key).getCodec(), ciphertext);
+            assertEquals(BaselineCipher.decrypt(ciphertext, key), decrypted, "case " + i);
+        }
+    }
+
+    @Test
+    void shortInputsStayOnTheCallingThread() {
+        CountingExecutor counting = new CountingExecutor();
+        ParallelCubeCipher cipher = new ParallelCubeCipher(100, counting, THREADS);
+        CubeCodec codec = KeySchedule.derive("threshold").getCodec();
+        String text = "x".repeat(99);
+        String ciphertext = codec.encrypt("x".repeat(19));
+        assertTrue(ciphertext.length() < 100);
+        assertEquals(codec.encrypt(text), cipher.encrypt(codec, text));
+        assertEquals(codec.decrypt(ciphertext), cipher.decrypt(codec, ciphertext));
+        assertEquals(0, counting.tasks.get());
+    }
+
+    @Test
+    void oneThreadNeverUsesTheExecutor() {
+        CountingExecutor counting = new CountingExecutor();
+        ParallelCubeCipher cipher = new ParallelCubeCipher(1, counting, 1);
+        CubeCodec codec = KeySchedule.derive("one thread").getCodec();
+        String text = "y".repeat(10_000);
+        cipher.decrypt(codec, cipher.encrypt(codec, text));
+        assertEquals(0, counting.tasks.get());
+    }
+
+    @Test
+    void longInputsRunInChunksOnTheGivenExecutor() {
+        CountingExecutor counting = new CountingExecutor();
+        ParallelCubeCipher cipher = new ParallelCubeCipher(100, counting, THREADS);
+        CubeCodec codec = KeySchedule.derive("chunks").getCodec();
+        // 1000 chars in chunks of max(100, 1000 / (4 * 4) + 1) chars
+        String text = "z".repeat(1000);
+        String ciphertext = cipher.encrypt(codec, text);
+        assertEquals(codec.encrypt(text), ciphertext);
+        assertEquals(10, counting.tasks.get());
+        assertFalse(counting.threads.contains(Thread.currentThread()));
+
+        counting.tasks.set(0);
+        assertEquals(text, cipher.decrypt(codec, ciphertext));
+        // 4999 chars cut at the first separator past every 4999 / 16 + 1 = 313 chars
+        assertEquals(16, counting.tasks.get());
+        assertFalse(counting.threads.contains(Thread.currentThread()));
+    }
+
+    private static ParallelCubeCipher cipher(Random random) {
+        return new ParallelCubeCipher(1 + random.nextInt(64), executor, THREADS);
+    }
+
+    /**
+     * Runs tasks on the shared pool, counting them and the threads they ran on.
+     */
+    private static final class CountingExecutor implements Executor {
+        final AtomicInteger tasks = new AtomicInteger();
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.incrementAndGet();
+            executor.execute(() -> {
+                threads.add(Thread.currentThread());
+                task.run();
+            });
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package cubeencryptor;
+
+import java.util.Random;
+
+/**
+ * Random keys, plaintexts and ciphertexts for the equivalence tests. Every generator is seeded, so a failing
+ * case can be replayed from its seed.
+ */
+final class Samples {
+    // Beyond printable ASCII: Latin-1, a BMP symbol, CJK, a surrogate pair and control characters
+    private static final String EXTRA = "éß€中😀\t\n\u0000\u007f";
+    // Malformed or borderline coordinates, including digits other than ASCII ones
+    private static final String[] GARBAGE = {
+        "", "?", "??", "0", "01", "01L", "01L11", "01l1", "00L1", "99R2", "+1L1", "-1C1", "1L1", "001L1",
+        "١٢L1", "０１C2", "01 ", "AB", "01X1", "é", "R1", "1", "02R3"
+    };
+    static final int CASES = 3300;
+
+    private Samples() {
+    }
+
+    static String key(Random random) {
+        return text(random, random.nextInt(40));
+    }
+
+    static String text(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            int pick = random.nextInt(20);
+            if (pick == 0) {
+                text.append(EXTRA.charAt(random.nextInt(EXTRA.length())));
+            } else if (pick == 1) {
+                text.append((char) random.nextInt(0x10000));
+            } else {
+                text.append((char) (32 + random.nextInt(95)));
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * A ciphertext of {@code tokens} coordinates, mixing valid ones, garbage and runs of spaces.
+     */
+    static String ciphertext(Random random, int tokens) {
+        StringBuilder text = new StringBuilder(tokens * 5);
+        for (int i = 0; i < tokens; i++) {
+            if (i > 0 || random.nextInt(10) == 0) {
+                text.append(random.nextInt(8) == 0 ? "  " : " ");
+            }
+            if (random.nextInt(3) == 0) {
+                text.append(GARBAGE[random.nextInt(GARBAGE.length)]);
+            } else {
+                text.append(String.format("%02d", 1 + random.nextInt(17)))
+                        .append("LCCCRR".charAt(random.nextInt(6))).append(1 + random.nextInt(3));
+            }
+        }
+        if (random.nextInt(10) == 0) {
+            text.append(' ');
+        }
+        return text.toString();
+    }
+}
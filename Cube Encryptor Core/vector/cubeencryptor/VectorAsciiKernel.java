@@ -0,0 +1,152 @@
+package cubeencryptor;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link AsciiKernel} on the incubating Vector API. A 128-entry byte table is looked up for a whole vector of
+ * input bytes at once with {@code selectFrom} over table slices one vector long, blended by the slice each byte
+ * falls in.
+ *
+ * Binary output is the code table looked up and stored. For text output every known ASCII byte has a token of
+ * the same length, so each of its bytes has a table of its own; the looked-up columns are interleaved into the
+ * output with one shuffle per output vector and a blend per column.
+ *
+ * Lives in its own source root, compiled with {@code --add-modules jdk.incubator.vector}, and is only loaded by
+ * {@link CubeBulkEncoder} when that module is in the boot layer; {@link #create(byte[], long[], int)} then
+ * declines machines without a wide enough vector unit.
+ */
+final class VectorAsciiKernel implements AsciiKernel {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final int SLICE_SHIFT = Integer.numberOfTrailingZeros(LANES);
+    private static final int SLICES = Math.max(1, 128 / LANES);
+
+    // Code of every ASCII byte, in slices
+    private final ByteVector[] codes;
+    // Byte j of the token of every ASCII byte, in slices
+    private final ByteVector[][] tokenColumns;
+    private final int tokenLength;
+    // Per output vector: the input lane of each output byte, and per column the output bytes it supplies
+    private final VectorShuffle<Byte>[] lanes;
+    private final VectorMask<Byte>[][] columnMasks;
+
+    /**
+     * Returns a kernel for the given tables, or null if this machine has no vector unit of at least 128 bits;
+     * narrower vectors are emulated and slower than the scalar loop.
+     */
+    static AsciiKernel create(byte[] codes, long[] tokenWords, int tokenLength) {
+        return SPECIES.vectorBitSize() < 128 ? null : new VectorAsciiKernel(codes, tokenWords, tokenLength);
+    }
+
+    private VectorAsciiKernel(byte[] codes, long[] tokenWords, int tokenLength) {
+        this.codes = slices(codes);
+        this.tokenLength = tokenLength;
+        this.tokenColumns = new ByteVector[tokenLength][];
+        byte[] column = new byte[128];
+        for (int j = 0; j < tokenLength; j++) {
+            for (int b = 0; b < 128; b++) {
+                column[b] = (byte) (tokenWords[b] >>> 8 * j);
+            }
+            tokenColumns[j] = slices(column);
+        }
+        // Arrays of a generic type can only be created raw; every element stored below is of SPECIES
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        VectorShuffle<Byte>[] lanes = new VectorShuffle[tokenLength];
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        VectorMask<Byte>[][] columnMasks = new VectorMask[tokenLength][tokenLength];
+        int[] lane = new int[LANES];
+        boolean[] inColumn = new boolean[LANES];
+        for (int k = 0; k < tokenLength; k++) {
+            for (int m = 0; m < LANES; m++) {
+                lane[m] = (k * LANES + m) / tokenLength;
+            }
+            lanes[k] = VectorShuffle.fromArray(SPECIES, lane, 0);
+            for (int j = 0; j < tokenLength; j++) {
+                for (int m = 0; m < LANES; m++) {
+                    inColumn[m] = (k * LANES + m) % tokenLength == j;
+                }
+                columnMasks[k][j] = VectorMask.fromArray(SPECIES, inColumn, 0);
+            }
+        }
+        this.lanes = lanes;
+        this.columnMasks = columnMasks;
+    }
+
+    @Override
+    public int chunkLength() {
+        return LANES;
+    }
+
+    @Override
+    public int encodeBinary(byte[] utf8, int from, int to, byte[] out, int pos) {
+        int i = from;
+        for (; i + LANES <= to; i += LANES, pos += LANES) {
+            ByteVector bytes = ByteVector.fromArray(SPECIES, utf8, i);
+            if (bytes.compare(VectorOperators.LT, (byte) 0).anyTrue()) {
+                break;
+            }
+            lookup(codes, bytes).intoArray(out, pos);
+        }
+        return i;
+    }
+
+    @Override
+    public int encodeText(byte[] utf8, int from, int to, byte[] out, int pos) {
+        int i = from;
+        ByteVector[] columns = new ByteVector[tokenLength];
+        for (; i + LANES <= to; i += LANES, pos += LANES * tokenLength) {
+            ByteVector bytes = ByteVector.fromArray(SPECIES, utf8, i);
+            if (bytes.compare(VectorOperators.LT, (byte) 0).anyTrue()) {
+                break;
+            }
+            // Only the unknown token starts with '?'; a coordinate starts with a digit
+            columns[0] = lookup(tokenColumns[0], bytes);
+            if (columns[0].compare(VectorOperators.EQ, (byte) '?').anyTrue()) {
+                break;
+            }
+            for (int j = 1; j < tokenLength; j++) {
+                columns[j] = lookup(tokenColumns[j], bytes);
+            }
+            for (int k = 0; k < tokenLength; k++) {
+                ByteVector tokens = columns[0].rearrange(lanes[k]);
+                for (int j = 1; j < tokenLength; j++) {
+                    tokens = tokens.blend(columns[j].rearrange(lanes[k]), columnMasks[k][j]);
+                }
+                tokens.intoArray(out, pos + k * LANES);
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Looks up every lane of {@code bytes}, all below 128, in a table split by {@link #slices(byte[])}.
+     */
+    private static ByteVector lookup(ByteVector[] table, ByteVector bytes) {
+        ByteVector low = bytes.lanewise(VectorOperators.AND, (byte) (LANES - 1));
+        ByteVector result = low.selectFrom(table[0]);
+        if (SLICES > 1) {
+            ByteVector slice = bytes.lanewise(VectorOperators.LSHR, SLICE_SHIFT);
+            for (int s = 1; s < SLICES; s++) {
+                result = result.blend(low.selectFrom(table[s]), slice.compare(VectorOperators.EQ, (byte) s));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A 128-entry table as vectors of {@link #LANES} entries each.
+     */
+    private static ByteVector[] slices(byte[] table) {
+        byte[] padded = new byte[SLICES * LANES];
+        System.arraycopy(table, 0, padded, 0, 128);
+        ByteVector[] slices = new ByteVector[SLICES];
+        for (int s = 0; s < SLICES; s++) {
+            slices[s] = ByteVector.fromArray(SPECIES, padded, s * LANES);
+        }
+        return slices;
+    }
+}
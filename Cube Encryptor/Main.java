@@ -1,14 +1,37 @@
 import shared.AbstractModule;
+import cubeencryptor.app.CubeCli;
+import cubeencryptor.CubeCodec;
+import cubeencryptor.CubeEvents;
+import cubeencryptor.KeySchedule;
+import cubeencryptor.KeyScheduleCache;
 import javax.swing.*;
 import echelon.desktop.DesktopModule;
 import echelon.desktop.components.BottomBarPanel;
 import java.awt.*;
 import java.awt.event.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.util.*;
 import java.util.List;
-import java.util.Arrays;
+import javax.swing.Timer;
+import jdk.jfr.Category;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
 
 public class Main extends AbstractModule {
+    // Key schedules shared by every encrypt/decrypt call and the Cube Navigator
+    private static final KeyScheduleCache KEY_SCHEDULES = new KeyScheduleCache(512);
+    // Input characters handled per published batch by the background cipher worker
+    private static final int WORKER_CHUNK_SIZE = 1 << 16;
+    
     private JFrame frame;
     // Encrypt/Decrypt tab components
     private JTextField keyField;
@@ -17,10 +40,21 @@ public class Main extends AbstractModule {
     private JButton encryptButton;
     private JButton decryptButton;
     private JButton closeButton;
+    private JButton cancelButton;
+    private JProgressBar progressBar;
+    private CipherWorker cipherWorker;
+    // Live mode keeps outputArea in the fixed-width layout of CubeCodec.encodeAligned and patches it per edit
+    private JCheckBox liveCheckBox;
+    private CubeCodec liveCodec;
     
     // Tabbed pane and Cube Navigator tab
     private JTabbedPane tabbedPane;
+    // Holds the Cube Navigator, which is built the first time its tab is selected
+    private JPanel navigatorTab;
     private CubeNavigatorPanel cubeNavigatorPanel;
+    // Schedule of the last encrypt, and the schedule whose cubes the navigator currently shows
+    private KeySchedule latestSchedule;
+    private KeySchedule navigatorSchedule;
 
     public Main() {
         // Setup main frame
@@ -44,8 +78,14 @@ public class Main extends AbstractModule {
         tabbedPane.addTab("Encrypt/Decrypt", encryptionPanel);
         
         // Cube Navigator tab
-        cubeNavigatorPanel = new CubeNavigatorPanel();
-        tabbedPane.addTab("Cube Navigator", cubeNavigatorPanel);
+        navigatorTab = new JPanel(new BorderLayout());
+        tabbedPane.addTab("Cube Navigator", navigatorTab);
+        tabbedPane.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                refreshNavigator();
+            }
+        });
         
         frame.getContentPane().add(tabbedPane);
     }
@@ -74,11 +114,21 @@ public class Main extends AbstractModule {
         
         // Bottom: buttons
         JPanel buttonPanel = new JPanel(new FlowLayout());
+        liveCheckBox = new JCheckBox("Live");
+        liveCheckBox.setToolTipText("Encrypt while typing");
         encryptButton = new JButton("Encrypt");
         decryptButton = new JButton("Decrypt");
         closeButton = new JButton("Close");
+        cancelButton = new JButton("Cancel");
+        cancelButton.setVisible(false);
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setVisible(false);
+        buttonPanel.add(liveCheckBox);
         buttonPanel.add(encryptButton);
         buttonPanel.add(decryptButton);
+        buttonPanel.add(progressBar);
+        buttonPanel.add(cancelButton);
         buttonPanel.add(closeButton);
         panel.add(buttonPanel, BorderLayout.SOUTH);
         
@@ -86,23 +136,80 @@ public class Main extends AbstractModule {
         encryptButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                String key = sanitizeKey(keyField.getText());
-                String text = inputArea.getText();
-                String encrypted = encrypt(text, key);
-                outputArea.setText(encrypted);
-                // Update Cube Navigator with new cubes from the sanitized key
-                List<String[]> cubes = generateCubes(key);
-                cubeNavigatorPanel.updateCubes(cubes);
+                KeySchedule schedule = KEY_SCHEDULES.get(keyField.getText());
+                startCipherWorker(new CipherWorker(schedule.getCodec(), inputArea.getText(), true));
+                // Update Cube Navigator with the cubes of the same schedule
+                latestSchedule = schedule;
+                refreshNavigator();
             }
         });
         
         decryptButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                String key = sanitizeKey(keyField.getText());
-                String encryptedText = inputArea.getText();
-                String decrypted = decrypt(encryptedText, key);
-                outputArea.setText(decrypted);
+                KeySchedule schedule = KEY_SCHEDULES.get(keyField.getText());
+                startCipherWorker(new CipherWorker(schedule.getCodec(), inputArea.getText(), false));
+            }
+        });
+        
+        liveCheckBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (liveCheckBox.isSelected()) {
+                    if (cipherWorker != null) {
+                        cipherWorker.cancel(false);
+                    }
+                    rebuildLiveOutput();
+                } else {
+                    liveCodec = null;
+                }
+            }
+        });
+        
+        inputArea.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                if (liveCodec != null) {
+                    patchLiveInsert(e.getOffset(), e.getLength());
+                }
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                if (liveCodec != null) {
+                    patchLiveRemove(e.getOffset(), e.getLength());
+                }
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes do not affect the text
+            }
+        });
+        
+        keyField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                keyChanged();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                keyChanged();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes do not affect the text
+            }
+        });
+        
+        cancelButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (cipherWorker != null) {
+                    cipherWorker.cancel(false);
+                }
             }
         });
         
@@ -116,6 +223,234 @@ public class Main extends AbstractModule {
         return panel;
     }
     
+    /**
+     * Builds the Cube Navigator on first use and pushes the cubes of the latest schedule to it, but only while
+     * its tab is showing; otherwise the update waits until the tab is selected, and so does splitting the cubes.
+     */
+    private void refreshNavigator() {
+        if (tabbedPane.getSelectedComponent() != navigatorTab) {
+            return;
+        }
+        if (cubeNavigatorPanel == null) {
+            cubeNavigatorPanel = new CubeNavigatorPanel();
+            navigatorTab.add(cubeNavigatorPanel, BorderLayout.CENTER);
+            navigatorTab.revalidate();
+        }
+        if (latestSchedule != null && latestSchedule != navigatorSchedule) {
+            navigatorSchedule = latestSchedule;
+            cubeNavigatorPanel.updateCubes(navigatorSchedule.getCubes());
+        }
+    }
+    
+    /**
+     * Clears the output and runs the worker, disabling Encrypt/Decrypt and showing progress until it finishes.
+     * Live mode is switched off, since the output no longer follows the input.
+     */
+    private void startCipherWorker(CipherWorker worker) {
+        liveCheckBox.setSelected(false);
+        liveCodec = null;
+        if (cipherWorker != null) {
+            cipherWorker.cancel(false);
+        }
+        cipherWorker = worker;
+        outputArea.setText("");
+        encryptButton.setEnabled(false);
+        decryptButton.setEnabled(false);
+        progressBar.setValue(0);
+        progressBar.setVisible(true);
+        cancelButton.setVisible(true);
+        worker.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if ("progress".equals(evt.getPropertyName()) && cipherWorker == worker) {
+                    progressBar.setValue((Integer) evt.getNewValue());
+                }
+            }
+        });
+        worker.execute();
+    }
+    
+    /**
+     * Encrypts or decrypts off the Event Dispatch Thread, publishing the output in batches so the text area
+     * fills in incrementally and the frame stays responsive on large inputs.
+     */
+    class CipherWorker extends SwingWorker<Void, String> {
+        private final CubeCodec codec;
+        private final String input;
+        private final boolean encrypt;
+        
+        CipherWorker(CubeCodec codec, String input, boolean encrypt) {
+            this.codec = codec;
+            this.input = input;
+            this.encrypt = encrypt;
+        }
+        
+        @Override
+        protected Void doInBackground() {
+            if (encrypt) {
+                encryptInBatches();
+            } else {
+                decryptInBatches();
+            }
+            return null;
+        }
+        
+        private void encryptInBatches() {
+            CubeEvents.Encrypt event = new CubeEvents.Encrypt();
+            event.begin();
+            int length = input.length();
+            long outputLength = 0;
+            for (int from = 0; from < length && !isCancelled(); ) {
+                int to = CubeCodec.alignToCodePoint(input, Math.min(length, from + WORKER_CHUNK_SIZE));
+                StringBuilder batch = new StringBuilder((to - from) * 5);
+                codec.encode(input, from, to, batch);
+                if (to == length) {
+                    // No separator after the last coordinate
+                    batch.setLength(batch.length() - 1);
+                }
+                outputLength += batch.length();
+                publish(batch.toString());
+                setProgress((int) (100L * to / length));
+                from = to;
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.keyFingerprint = codec.getKeyFingerprint();
+                event.inputLength = length;
+                event.outputLength = outputLength;
+                event.commit();
+            }
+        }
+        
+        private void decryptInBatches() {
+            int length = input.length();
+            if (length == 0) {
+                publish(codec.decrypt(input));
+                return;
+            }
+            CubeEvents.Decrypt event = new CubeEvents.Decrypt();
+            event.begin();
+            long outputLength = 0;
+            // Trailing empty coordinates are dropped, so trailing separators can be cut off before batching.
+            while (length > 0 && input.charAt(length - 1) == ' ') {
+                length--;
+            }
+            int from = 0;
+            while (from < length && !isCancelled()) {
+                // Cut only at a separator so no coordinate is split between batches.
+                int to = input.indexOf(' ', Math.min(length, from + WORKER_CHUNK_SIZE));
+                if (to < 0 || to > length) {
+                    to = length;
+                }
+                StringBuilder batch = new StringBuilder((to - from) / 5 + 1);
+                codec.decodeTokens(input, from, to, batch, false);
+                outputLength += batch.length();
+                publish(batch.toString());
+                setProgress((int) (100L * to / length));
+                from = to + 1;
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.keyFingerprint = codec.getKeyFingerprint();
+                event.inputLength = input.length();
+                event.outputLength = outputLength;
+                event.commit();
+            }
+        }
+        
+        @Override
+        protected void process(List<String> batches) {
+            if (cipherWorker != this || isCancelled()) {
+                return;
+            }
+            for (String batch : batches) {
+                outputArea.append(batch);
+            }
+        }
+        
+        @Override
+        protected void done() {
+            if (cipherWorker != this) {
+                return;
+            }
+            cipherWorker = null;
+            encryptButton.setEnabled(true);
+            decryptButton.setEnabled(true);
+            progressBar.setVisible(false);
+            cancelButton.setVisible(false);
+        }
+    }
+    
+    // ------------------------------
+    // Live Encryption
+    // ------------------------------
+    
+    /**
+     * Re-encrypts the whole input with the current key. Used when live mode is switched on and when the key
+     * changes; every other edit is patched in place.
+     */
+    private void rebuildLiveOutput() {
+        KeySchedule schedule = KEY_SCHEDULES.get(keyField.getText());
+        liveCodec = schedule.getCodec();
+        String text = inputArea.getText();
+        StringBuilder encrypted = new StringBuilder(text.length() * (liveCodec.getCoordinateLength() + 1));
+        liveCodec.encodeAligned(text, 0, text.length(), encrypted);
+        if (encrypted.length() > 0) {
+            encrypted.setLength(encrypted.length() - 1);
+        }
+        outputArea.setText(encrypted.toString());
+        latestSchedule = schedule;
+        refreshNavigator();
+    }
+    
+    private void keyChanged() {
+        if (liveCodec != null) {
+            rebuildLiveOutput();
+        }
+    }
+    
+    /**
+     * Encrypts the {@code length} characters inserted at {@code offset} and inserts their coordinates at the
+     * matching position of the output. Coordinates are separated, not terminated, by a space, so text appended
+     * at the end needs a separator in front instead of behind.
+     */
+    private void patchLiveInsert(int offset, int length) {
+        int stride = liveCodec.getCoordinateLength() + 1;
+        int oldLength = inputArea.getDocument().getLength() - length;
+        StringBuilder encrypted = new StringBuilder(length * stride + 1);
+        try {
+            liveCodec.encodeAligned(inputArea.getDocument().getText(offset, length), 0, length, encrypted);
+        } catch (BadLocationException e) {
+            rebuildLiveOutput();
+            return;
+        }
+        if (offset < oldLength) {
+            outputArea.insert(encrypted.toString(), offset * stride);
+            return;
+        }
+        encrypted.setLength(encrypted.length() - 1);
+        if (oldLength > 0) {
+            encrypted.insert(0, ' ');
+        }
+        outputArea.append(encrypted.toString());
+    }
+    
+    /**
+     * Removes the coordinates of the {@code length} characters that were removed at {@code offset}.
+     */
+    private void patchLiveRemove(int offset, int length) {
+        int stride = liveCodec.getCoordinateLength() + 1;
+        int newLength = inputArea.getDocument().getLength();
+        if (newLength == 0) {
+            outputArea.setText("");
+        } else if (offset < newLength) {
+            outputArea.replaceRange(null, offset * stride, (offset + length) * stride);
+        } else {
+            // Removed from the end: also drop the separator in front of the first removed coordinate
+            outputArea.replaceRange(null, offset * stride - 1, (offset + length) * stride - 1);
+        }
+    }
+    
     // ------------------------------
     // AbstractModule Methods
     // ------------------------------
@@ -165,46 +500,14 @@ public class Main extends AbstractModule {
      * Sanitizes the key by removing duplicate characters and appending missing printable ASCII characters.
      */
     public String sanitizeKey(String inputKey) {
-        Set<Character> usedChars = new LinkedHashSet<>();
-        StringBuilder sanitizedKey = new StringBuilder();
-        for (char ch : inputKey.toCharArray()) {
-            if (!usedChars.contains(ch)) {
-                usedChars.add(ch);
-                sanitizedKey.append(ch);
-            }
-        }
-        for (char ch = 32; ch <= 126; ch++) {
-            if (!usedChars.contains(ch)) {
-                sanitizedKey.append(ch);
-            }
-        }
-        System.out.println("Sanitized Key: " + sanitizedKey.toString());
-        return sanitizedKey.toString();
+        return KEY_SCHEDULES.get(inputKey).getSanitizedKey();
     }
     
     /**
      * Splits the sanitized key into cubes (each cube is an array of 6 characters).
      */
     public List<String[]> generateCubes(String key) {
-        List<String[]> cubes = new ArrayList<>();
-        int cubeSize = 6;
-        System.out.println("Generating cubes for sanitized key: " + key);
-        for (int i = 0; i < key.length(); i += cubeSize) {
-            String[] cube = new String[cubeSize];
-            for (int j = 0; j < cubeSize; j++) {
-                if (i + j < key.length()) {
-                    cube[j] = String.valueOf(key.charAt(i + j));
-                } else {
-                    cube[j] = " "; // pad if needed
-                }
-            }
-            cubes.add(cube);
-        }
-        System.out.println("Generated Cubes: " + cubes.size());
-        for (int i = 0; i < cubes.size(); i++) {
-            System.out.println("Cube " + (i + 1) + ": " + Arrays.toString(cubes.get(i)));
-        }
-        return cubes;
+        return KeySchedule.splitIntoCubes(key);
     }
     
     /**
@@ -212,76 +515,23 @@ public class Main extends AbstractModule {
      * (Each letter is mapped to a cube coordinate using your previous mapping.)
      */
     public String encrypt(String text, String key) {
-        List<String[]> cubes = generateCubes(key);
-        StringBuilder encryptedText = new StringBuilder();
-        for (char letter : text.toCharArray()) {
-            String encrypted = findCoordinates(letter, cubes);
-            encryptedText.append(encrypted).append(" ");
-        }
-        return encryptedText.toString().trim();
+        return codecFor(key).encrypt(text);
     }
     
     /**
      * Decrypts the given encrypted text using the sanitized key.
      */
     public String decrypt(String encryptedText, String key) {
-        List<String[]> cubes = generateCubes(key);
-        StringBuilder decryptedText = new StringBuilder();
-        String[] codes = encryptedText.split(" ");
-        for (String code : codes) {
-            char decrypted = findCharacter(code, cubes);
-            decryptedText.append(decrypted);
-        }
-        return decryptedText.toString();
+        return codecFor(key).decrypt(encryptedText);
     }
     
     /**
-     * Maps a letter to its cube coordinate.
-     * Mapping: index 0 = L1, 1 = C1, 2 = C2, 3 = C3, 4 = R1, 5 = R2.
+     * Returns the codec for a key that is used as-is for the cubes. A sanitized key comes from the schedule
+     * cache; any other key gets its own codec and leaves the cache alone.
      */
-    private String findCoordinates(char letter, List<String[]> cubes) {
-        for (int cubeNumber = 0; cubeNumber < cubes.size(); cubeNumber++) {
-            String[] cube = cubes.get(cubeNumber);
-            for (int index = 0; index < cube.length; index++) {
-                if (cube[index].equals(String.valueOf(letter))) {
-                    String coordinate;
-                    switch (index) {
-                        case 0: coordinate = "L1"; break;
-                        case 1: coordinate = "C1"; break;
-                        case 2: coordinate = "C2"; break;
-                        case 3: coordinate = "C3"; break;
-                        case 4: coordinate = "R1"; break;
-                        case 5: coordinate = "R2"; break;
-                        default: coordinate = "";
-                    }
-                    return String.format("%02d%s", cubeNumber + 1, coordinate);
-                }
-            }
-        }
-        return "??";
-    }
-    
-    /**
-     * Returns the character corresponding to a cube code.
-     */
-    private char findCharacter(String cubeCode, List<String[]> cubes) {
-        try {
-            int cubeNumber = Integer.parseInt(cubeCode.substring(0, 2)) - 1;
-            String coordinate = cubeCode.substring(2);
-            int index;
-            switch (coordinate) {
-                case "L1": index = 0; break;
-                case "C1": index = 1; break;
-                case "C2": index = 2; break;
-                case "C3": index = 3; break;
-                case "R1": index = 4; break;
-                case "R2": index = 5; break;
-                default: return '?';
-            }
-            return cubes.get(cubeNumber)[index].charAt(0);
-        } catch (Exception e) {
-            return '?';
-        }
+    private CubeCodec codecFor(String key) {
+        KeySchedule schedule = KEY_SCHEDULES.getIfSanitized(key);
+        return schedule != null ? schedule.getCodec() : new CubeCodec(key);
     }
     
     // ========================================================
@@ -293,14 +543,51 @@ public class Main extends AbstractModule {
      * The bottom section is the 3D cube area, which includes a large interactive 3D cube in the center,
      * with small preview panels on the left and right showing the previous and next cubes (if available).
      * Additionally, explicit "Previous Cube" and "Next Cube" buttons below the 3D area let you navigate.
+     * A scrollable gallery on the right shows every cube as a thumbnail; clicking one selects it, and the
+     * Find field jumps to the cube holding a character.
      */
-    class CubeNavigatorPanel extends JPanel {
+    static class CubeNavigatorPanel extends JPanel {
+        // Rendering resources shared by every cube panel instead of being allocated on each paint
+        static final BasicStroke EDGE_STROKE = new BasicStroke(2);
+        static final Font NET_FONT = new Font("SansSerif", Font.BOLD, 24);
+        static final Font MAIN_CUBE_FONT = new Font("SansSerif", Font.BOLD, 32);
+        static final Font PREVIEW_FONT = new Font("SansSerif", Font.BOLD, 24);
+        static final Font THUMBNAIL_FONT = new Font("SansSerif", Font.BOLD, 12);
+        static final Font THUMBNAIL_LABEL_FONT = new Font("SansSerif", Font.PLAIN, 10);
+        static final double[][] CUBE_VERTICES = {
+            {-1, -1, -1}, {1, -1, -1}, {1, 1, -1}, {-1, 1, -1},
+            {-1, -1, 1}, {1, -1, 1}, {1, 1, 1}, {-1, 1, 1}
+        };
+        static final int[][] CUBE_EDGES = {
+            {0,1},{1,2},{2,3},{3,0},
+            {4,5},{5,6},{6,7},{7,4},
+            {0,4},{1,5},{2,6},{3,7}
+        };
+        // Faces: front, back, left, right, top, bottom.
+        static final int[][] CUBE_FACES = {
+            {4,5,6,7}, // front (z=1)
+            {0,1,2,3}, // back (z=-1)
+            {0,3,7,4}, // left (x=-1)
+            {1,2,6,5}, // right (x=1)
+            {3,2,6,7}, // top (y=1)
+            {0,1,5,4}  // bottom (y=-1)
+        };
+        // Mapping: front->cube[2], back->cube[5], left->cube[0],
+        // right->cube[3], top->cube[1], bottom->cube[4]
+        static final int[] FACE_TO_CUBE_INDEX = {2, 5, 0, 3, 1, 4};
+        
         private List<String[]> cubes;
+        // Face symbol -> index of the first cube holding it, for Find
+        private Map<String, Integer> cubeOfSymbol = new HashMap<>();
         private int currentCubeIndex = 0;
         private OpenCube2DPanel openCubePanel;
         private Cube3DNavigatorPanel cube3DNavigatorPanel;
+        private CubeGalleryPanel galleryPanel;
         private JPanel navButtonPanel;
-        private JButton prevButton, nextButton;
+        private JButton prevButton, nextButton, findButton;
+        private JTextField findField;
+        private JCheckBox frameStatsBox;
+        private JSpinner maxFpsSpinner;
         private JLabel indexLabel;
         
         public CubeNavigatorPanel() {
@@ -312,6 +599,12 @@ public class Main extends AbstractModule {
             // Center: 3D cube navigator area (with preview panels)
             cube3DNavigatorPanel = new Cube3DNavigatorPanel();
             add(cube3DNavigatorPanel, BorderLayout.CENTER);
+            // Right: gallery of every cube
+            galleryPanel = new CubeGalleryPanel();
+            JScrollPane galleryScrollPane = new JScrollPane(galleryPanel,
+                    JScrollPane.VERTICAL_SCROLLBAR_ALWAYS, JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+            galleryScrollPane.setBorder(BorderFactory.createTitledBorder("Gallery"));
+            add(galleryScrollPane, BorderLayout.EAST);
             // Bottom: Navigation buttons and index label
             navButtonPanel = new JPanel(new BorderLayout());
             prevButton = new JButton("Previous Cube");
@@ -335,9 +628,40 @@ public class Main extends AbstractModule {
                     }
                 }
             });
+            frameStatsBox = new JCheckBox("Show FPS");
+            frameStatsBox.addActionListener(new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    cube3DNavigatorPanel.mainCube.setShowFrameStats(frameStatsBox.isSelected());
+                }
+            });
+            maxFpsSpinner = new JSpinner(new SpinnerNumberModel(cube3DNavigatorPanel.mainCube.getMaxFps(), 1, 240, 5));
+            maxFpsSpinner.setToolTipText("Most frames per second drawn while the cube rotates");
+            maxFpsSpinner.addChangeListener(new ChangeListener() {
+                @Override
+                public void stateChanged(ChangeEvent e) {
+                    cube3DNavigatorPanel.mainCube.setMaxFps((Integer) maxFpsSpinner.getValue());
+                }
+            });
+            findField = new JTextField(4);
+            findButton = new JButton("Find");
+            ActionListener findListener = new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    findCube(findField.getText());
+                }
+            };
+            findField.addActionListener(findListener);
+            findButton.addActionListener(findListener);
             JPanel buttonPanel = new JPanel(new FlowLayout());
             buttonPanel.add(prevButton);
             buttonPanel.add(nextButton);
+            buttonPanel.add(new JLabel("Character:"));
+            buttonPanel.add(findField);
+            buttonPanel.add(findButton);
+            buttonPanel.add(frameStatsBox);
+            buttonPanel.add(new JLabel("Max FPS:"));
+            buttonPanel.add(maxFpsSpinner);
             navButtonPanel.add(buttonPanel, BorderLayout.NORTH);
             navButtonPanel.add(indexLabel, BorderLayout.SOUTH);
             add(navButtonPanel, BorderLayout.SOUTH);
@@ -346,9 +670,45 @@ public class Main extends AbstractModule {
         public void updateCubes(List<String[]> cubes) {
             this.cubes = cubes;
             currentCubeIndex = 0;
+            cubeOfSymbol = new HashMap<>();
+            if (cubes != null) {
+                for (int i = 0; i < cubes.size(); i++) {
+                    for (String symbol : cubes.get(i)) {
+                        cubeOfSymbol.putIfAbsent(symbol, i);
+                    }
+                }
+            }
+            galleryPanel.cubesChanged();
             updateCubeDisplay();
         }
         
+        /**
+         * Selects the cube holding the first character of {@code text}, if any cube holds it.
+         */
+        public void findCube(String text) {
+            if (text.isEmpty() || cubes == null) {
+                return;
+            }
+            Integer index = cubeOfSymbol.get(new String(Character.toChars(text.codePointAt(0))));
+            if (index == null) {
+                // Legacy schedules hold single chars, so a surrogate pair is looked up by its first half
+                index = cubeOfSymbol.get(text.substring(0, 1));
+            }
+            if (index == null) {
+                Toolkit.getDefaultToolkit().beep();
+                indexLabel.setText("No cube holds '" + new String(Character.toChars(text.codePointAt(0))) + "'");
+                return;
+            }
+            selectCube(index);
+        }
+        
+        private void selectCube(int index) {
+            if (cubes != null && index >= 0 && index < cubes.size()) {
+                currentCubeIndex = index;
+                updateCubeDisplay();
+            }
+        }
+        
         private void updateCubeDisplay() {
             if (cubes == null || cubes.size() == 0) {
                 indexLabel.setText("No cubes available");
@@ -357,6 +717,7 @@ public class Main extends AbstractModule {
                 cube3DNavigatorPanel.setPreviewCubes(null, null);
                 prevButton.setEnabled(false);
                 nextButton.setEnabled(false);
+                galleryPanel.showSelection();
             } else {
                 indexLabel.setText("Cube " + (currentCubeIndex + 1) + " of " + cubes.size());
                 String[] currentCube = cubes.get(currentCubeIndex);
@@ -375,31 +736,183 @@ public class Main extends AbstractModule {
                 
                 cube3DNavigatorPanel.revalidate();
                 cube3DNavigatorPanel.repaint();
+                galleryPanel.showSelection();
+            }
+        }
+        
+        /**
+         * Projects the unit cube rotated by angleX then angleY into xs/ys. The rotation terms are computed
+         * once per call rather than once per vertex.
+         */
+        static void projectCube(double angleX, double angleY, double scale, int centerX, int centerY,
+                int[] xs, int[] ys) {
+            double cosX = Math.cos(angleX), sinX = Math.sin(angleX);
+            double cosY = Math.cos(angleY), sinY = Math.sin(angleY);
+            for (int i = 0; i < CUBE_VERTICES.length; i++) {
+                double[] v = CUBE_VERTICES[i];
+                // Rotate around X
+                double y = v[1] * cosX - v[2] * sinX;
+                double z = v[1] * sinX + v[2] * cosX;
+                // Rotate around Y
+                double x = v[0] * cosY + z * sinY;
+                z = -v[0] * sinY + z * cosY;
+                double perspective = 4 / (4 + z);
+                xs[i] = (int) (centerX + x * scale * perspective);
+                ys[i] = (int) (centerY + y * scale * perspective);
+            }
+        }
+        
+        /**
+         * Draws the projected wireframe in blue and, if a cube is given, its letters in red at the face centers.
+         */
+        static void drawCube(Graphics2D g2, int[] xs, int[] ys, String[] cube, Font font) {
+            g2.setStroke(EDGE_STROKE);
+            g2.setColor(Color.BLUE);
+            for (int[] edge : CUBE_EDGES) {
+                g2.drawLine(xs[edge[0]], ys[edge[0]], xs[edge[1]], ys[edge[1]]);
+            }
+            if (cube == null) {
+                return;
+            }
+            g2.setFont(font);
+            g2.setColor(Color.RED);
+            FontMetrics fm = g2.getFontMetrics();
+            for (int f = 0; f < CUBE_FACES.length; f++) {
+                int[] face = CUBE_FACES[f];
+                int sumX = 0, sumY = 0;
+                for (int idx : face) {
+                    sumX += xs[idx];
+                    sumY += ys[idx];
+                }
+                int centerFaceX = sumX / face.length;
+                int centerFaceY = sumY / face.length;
+                String letter = cube[FACE_TO_CUBE_INDEX[f]];
+                g2.drawString(letter, centerFaceX - fm.stringWidth(letter) / 2, centerFaceY + fm.getAscent() / 2);
             }
         }
         
         // ---------------------------
-        // 2D Open Cube Net Panel
+        // Flight Recorder event for one paint of a cube panel. Recorded only past the threshold, i.e. for
+        // paints that eat a large part of a 60 fps frame. The jdk.jfr Event and Label types are written out
+        // in full, as java.awt has classes of the same names.
+        // ---------------------------
+        @Name("cubeencryptor.Paint")
+        @jdk.jfr.Label("Cube Panel Paint")
+        @Category("Cube Encryptor")
+        @Threshold("10 ms")
+        @StackTrace(false)
+        static class PaintEvent extends jdk.jfr.Event {
+            @jdk.jfr.Label("Panel")
+            String panel;
+            @jdk.jfr.Label("Painted Width")
+            int width;
+            @jdk.jfr.Label("Painted Height")
+            int height;
+            @jdk.jfr.Label("Images Rendered")
+            int imagesRendered;
+            
+            /**
+             * Ends the event and commits it if it passes the threshold.
+             */
+            void finish(JComponent component, int width, int height, int imagesRendered) {
+                end();
+                if (shouldCommit()) {
+                    this.panel = component.getClass().getSimpleName();
+                    this.width = width;
+                    this.height = height;
+                    this.imagesRendered = imagesRendered;
+                    commit();
+                }
+            }
+        }
+        
+        // ---------------------------
+        // Base for panels whose picture only depends on their cube and size. The picture, background
+        // included, is rendered once into an offscreen image (at the device scale, so it stays sharp on
+        // HiDPI screens) and copied to the screen until the cube, the colors or the size change.
         // ---------------------------
-        class OpenCube2DPanel extends JPanel {
-            private String[] cube;
+        abstract static class CachedCubePanel extends JPanel {
+            protected String[] cube;
+            private BufferedImage cache;
+            private int cacheWidth, cacheHeight;
+            private double cacheScale;
+            
             public void setCube(String[] cube) {
                 this.cube = cube;
+                cache = null;
                 repaint();
             }
+            
+            @Override
+            public void setBackground(Color bg) {
+                cache = null;
+                super.setBackground(bg);
+            }
+            
+            @Override
+            public void setForeground(Color fg) {
+                cache = null;
+                super.setForeground(fg);
+            }
+            
+            /**
+             * Renders the panel content for the given size. Called only when the cached image is stale.
+             */
+            protected abstract void render(Graphics2D g2, int width, int height);
+            
             @Override
             protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
+                int width = getWidth();
+                int height = getHeight();
+                if (width <= 0 || height <= 0) {
+                    return;
+                }
+                PaintEvent event = new PaintEvent();
+                event.begin();
+                Graphics2D g2 = (Graphics2D) g;
+                double scale = Math.max(1.0, g2.getTransform().getScaleX());
+                boolean stale = cache == null || cacheWidth != width || cacheHeight != height || cacheScale != scale;
+                if (stale) {
+                    // An opaque image is a plain copy to draw; only see-through panels need alpha.
+                    cache = new BufferedImage((int) Math.ceil(width * scale), (int) Math.ceil(height * scale),
+                            isOpaque() ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+                    Graphics2D cacheGraphics = cache.createGraphics();
+                    try {
+                        cacheGraphics.scale(scale, scale);
+                        if (isOpaque()) {
+                            cacheGraphics.setColor(getBackground());
+                            cacheGraphics.fillRect(0, 0, width, height);
+                        }
+                        cacheGraphics.setColor(getForeground());
+                        cacheGraphics.setFont(getFont());
+                        render(cacheGraphics, width, height);
+                    } finally {
+                        cacheGraphics.dispose();
+                    }
+                    cacheWidth = width;
+                    cacheHeight = height;
+                    cacheScale = scale;
+                }
+                g2.drawImage(cache, 0, 0, width, height, null);
+                event.finish(this, width, height, stale ? 1 : 0);
+            }
+        }
+        
+        // ---------------------------
+        // 2D Open Cube Net Panel
+        // ---------------------------
+        class OpenCube2DPanel extends CachedCubePanel {
+            @Override
+            protected void render(Graphics2D g2, int width, int height) {
                 if (cube == null) {
-                    g.drawString("No cube data", 20, 20);
+                    g2.drawString("No cube data", 20, 20);
                     return;
                 }
                 int cellSize = 80;
                 int gap = 10;
                 // Center the net horizontally in the panel.
-                int panelWidth = getWidth();
                 int netWidth = 4 * (cellSize + gap) - gap;
-                int startX = (panelWidth - netWidth) / 2;
+                int startX = (width - netWidth) / 2;
                 // Define positions for the net:
                 int topX = startX + cellSize + gap, topY = 0;
                 int leftX = startX, leftY = cellSize + gap;
@@ -408,36 +921,224 @@ public class Main extends AbstractModule {
                 int backX = startX + 3 * (cellSize + gap), backY = cellSize + gap;
                 int bottomX = startX + cellSize + gap, bottomY = 2 * (cellSize + gap);
                 
-                Graphics2D g2 = (Graphics2D) g;
-                g2.setStroke(new BasicStroke(2));
+                g2.setStroke(EDGE_STROKE);
+                g2.setFont(NET_FONT);
                 // Draw Top (cube[1])
-                g2.drawRect(topX, topY, cellSize, cellSize);
-                drawCenteredString(g2, cube[1], new Rectangle(topX, topY, cellSize, cellSize));
+                drawCell(g2, cube[1], topX, topY, cellSize);
                 // Draw Left (cube[0])
-                g2.drawRect(leftX, leftY, cellSize, cellSize);
-                drawCenteredString(g2, cube[0], new Rectangle(leftX, leftY, cellSize, cellSize));
+                drawCell(g2, cube[0], leftX, leftY, cellSize);
                 // Draw Front (cube[2])
-                g2.drawRect(frontX, frontY, cellSize, cellSize);
-                drawCenteredString(g2, cube[2], new Rectangle(frontX, frontY, cellSize, cellSize));
+                drawCell(g2, cube[2], frontX, frontY, cellSize);
                 // Draw Right (cube[3])
-                g2.drawRect(rightX, rightY, cellSize, cellSize);
-                drawCenteredString(g2, cube[3], new Rectangle(rightX, rightY, cellSize, cellSize));
+                drawCell(g2, cube[3], rightX, rightY, cellSize);
                 // Draw Back (cube[5])
-                g2.drawRect(backX, backY, cellSize, cellSize);
-                drawCenteredString(g2, cube[5], new Rectangle(backX, backY, cellSize, cellSize));
+                drawCell(g2, cube[5], backX, backY, cellSize);
                 // Draw Bottom (cube[4])
-                g2.drawRect(bottomX, bottomY, cellSize, cellSize);
-                drawCenteredString(g2, cube[4], new Rectangle(bottomX, bottomY, cellSize, cellSize));
+                drawCell(g2, cube[4], bottomX, bottomY, cellSize);
             }
-            private void drawCenteredString(Graphics2D g2, String text, Rectangle rect) {
-                Font font = new Font("SansSerif", Font.BOLD, 24);
-                g2.setFont(font);
+            private void drawCell(Graphics2D g2, String text, int x, int y, int cellSize) {
+                g2.drawRect(x, y, cellSize, cellSize);
                 FontMetrics fm = g2.getFontMetrics();
                 int textWidth = fm.stringWidth(text);
                 int textHeight = fm.getAscent();
-                int x = rect.x + (rect.width - textWidth) / 2;
-                int y = rect.y + (rect.height + textHeight) / 2;
-                g2.drawString(text, x, y);
+                g2.drawString(text, x + (cellSize - textWidth) / 2, y + (cellSize + textHeight) / 2);
+            }
+        }
+        
+        // ---------------------------
+        // Cube Gallery Panel
+        // A grid of every cube in a scroll pane. Only the cells intersecting the clip are painted, each from
+        // a thumbnail rendered once and kept in a small LRU cache, so scrolling through thousands of cubes
+        // costs one image copy per visible cell.
+        // ---------------------------
+        class CubeGalleryPanel extends JPanel implements Scrollable {
+            private static final int CELL_SIZE = 80;
+            private static final int VISIBLE_COLUMNS = 3;
+            private static final int VISIBLE_ROWS = 6;
+            private static final int MIN_CACHED_THUMBNAILS = 256;
+            
+            // Cube index -> thumbnail, least recently painted first
+            private final LinkedHashMap<Integer, BufferedImage> thumbnails =
+                    new LinkedHashMap<Integer, BufferedImage>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest) {
+                    // Always keep at least two screens' worth, so scrolling back and forth never re-renders
+                    return size() > Math.max(MIN_CACHED_THUMBNAILS, 2 * visibleCells());
+                }
+            };
+            private double thumbnailScale;
+            // Thumbnails rendered so far, for the paint event
+            private int thumbnailsRendered;
+            private int selectedIndex = -1;
+            private final int[] xs = new int[CUBE_VERTICES.length];
+            private final int[] ys = new int[CUBE_VERTICES.length];
+            
+            public CubeGalleryPanel() {
+                setOpaque(true);
+                setBackground(Color.WHITE);
+                addMouseListener(new MouseAdapter() {
+                    public void mouseClicked(MouseEvent e) {
+                        int column = e.getX() / CELL_SIZE;
+                        if (column < columns()) {
+                            selectCube((e.getY() / CELL_SIZE) * columns() + column);
+                        }
+                    }
+                });
+            }
+            
+            /**
+             * Drops every thumbnail and resizes the grid for the new cubes.
+             */
+            public void cubesChanged() {
+                thumbnails.clear();
+                selectedIndex = -1;
+                revalidate();
+                repaint();
+            }
+            
+            /**
+             * Highlights the current cube and scrolls it into view.
+             */
+            public void showSelection() {
+                int index = cubes == null || cubes.isEmpty() ? -1 : currentCubeIndex;
+                if (index == selectedIndex) {
+                    return;
+                }
+                if (selectedIndex >= 0) {
+                    repaint(cellBounds(selectedIndex));
+                }
+                selectedIndex = index;
+                if (index >= 0) {
+                    Rectangle cell = cellBounds(index);
+                    repaint(cell);
+                    scrollRectToVisible(cell);
+                }
+            }
+            
+            private int cubeCount() {
+                return cubes == null ? 0 : cubes.size();
+            }
+            
+            /**
+             * Columns that fit the viewport; the grid width follows the viewport, not the other way around.
+             */
+            private int columns() {
+                int width = getParent() instanceof JViewport ? getParent().getWidth() : getWidth();
+                return Math.max(1, width > 0 ? width / CELL_SIZE : VISIBLE_COLUMNS);
+            }
+            
+            private int visibleCells() {
+                Rectangle visible = getVisibleRect();
+                return columns() * (visible.height / CELL_SIZE + 2);
+            }
+            
+            private Rectangle cellBounds(int index) {
+                int columns = columns();
+                return new Rectangle((index % columns) * CELL_SIZE, (index / columns) * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+            }
+            
+            @Override
+            public Dimension getPreferredSize() {
+                int columns = columns();
+                int rows = (cubeCount() + columns - 1) / columns;
+                return new Dimension(VISIBLE_COLUMNS * CELL_SIZE, rows * CELL_SIZE);
+            }
+            
+            @Override
+            public Dimension getPreferredScrollableViewportSize() {
+                return new Dimension(VISIBLE_COLUMNS * CELL_SIZE, VISIBLE_ROWS * CELL_SIZE);
+            }
+            
+            @Override
+            public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+                return CELL_SIZE / 4;
+            }
+            
+            @Override
+            public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+                // A page, rounded down to whole rows
+                return Math.max(CELL_SIZE, visibleRect.height / CELL_SIZE * CELL_SIZE);
+            }
+            
+            @Override
+            public boolean getScrollableTracksViewportWidth() {
+                return true;
+            }
+            
+            @Override
+            public boolean getScrollableTracksViewportHeight() {
+                return false;
+            }
+            
+            @Override
+            protected void paintComponent(Graphics g) {
+                Graphics2D g2 = (Graphics2D) g;
+                Rectangle clip = g2.getClipBounds();
+                if (clip == null) {
+                    clip = new Rectangle(0, 0, getWidth(), getHeight());
+                }
+                g2.setColor(getBackground());
+                g2.fillRect(clip.x, clip.y, clip.width, clip.height);
+                int count = cubeCount();
+                if (count == 0) {
+                    return;
+                }
+                PaintEvent event = new PaintEvent();
+                event.begin();
+                int rendered = thumbnailsRendered;
+                double scale = Math.max(1.0, g2.getTransform().getScaleX());
+                if (scale != thumbnailScale) {
+                    thumbnails.clear();
+                    thumbnailScale = scale;
+                }
+                int columns = columns();
+                int firstRow = clip.y / CELL_SIZE;
+                int lastRow = Math.min((count - 1) / columns, (clip.y + clip.height - 1) / CELL_SIZE);
+                int firstColumn = clip.x / CELL_SIZE;
+                int lastColumn = Math.min(columns - 1, (clip.x + clip.width - 1) / CELL_SIZE);
+                for (int row = firstRow; row <= lastRow; row++) {
+                    for (int column = firstColumn; column <= lastColumn; column++) {
+                        int index = row * columns + column;
+                        if (index >= count) {
+                            break;
+                        }
+                        int x = column * CELL_SIZE;
+                        int y = row * CELL_SIZE;
+                        g2.drawImage(thumbnail(index), x, y, CELL_SIZE, CELL_SIZE, null);
+                        if (index == selectedIndex) {
+                            g2.setColor(Color.ORANGE);
+                            g2.setStroke(EDGE_STROKE);
+                            g2.drawRect(x + 1, y + 1, CELL_SIZE - 3, CELL_SIZE - 3);
+                        }
+                    }
+                }
+                event.finish(this, clip.width, clip.height, thumbnailsRendered - rendered);
+            }
+            
+            private BufferedImage thumbnail(int index) {
+                BufferedImage image = thumbnails.get(index);
+                if (image != null) {
+                    return image;
+                }
+                int size = (int) Math.ceil(CELL_SIZE * thumbnailScale);
+                image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+                Graphics2D g2 = image.createGraphics();
+                try {
+                    g2.scale(thumbnailScale, thumbnailScale);
+                    g2.setColor(getBackground());
+                    g2.fillRect(0, 0, CELL_SIZE, CELL_SIZE);
+                    g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                    projectCube(0.3, 0.3, CELL_SIZE * 0.22, CELL_SIZE / 2, CELL_SIZE / 2 + 5, xs, ys);
+                    drawCube(g2, xs, ys, cubes.get(index), THUMBNAIL_FONT);
+                    g2.setFont(THUMBNAIL_LABEL_FONT);
+                    g2.setColor(Color.GRAY);
+                    g2.drawString(String.valueOf(index + 1), 3, g2.getFontMetrics().getAscent());
+                } finally {
+                    g2.dispose();
+                }
+                thumbnails.put(index, image);
+                thumbnailsRendered++;
+                return image;
             }
         }
         
@@ -490,33 +1191,48 @@ public class Main extends AbstractModule {
             }
             
             // ---------------------------
-            // Interactive main 3D cube panel.
+            // Interactive main 3D cube panel. Mouse drags only accumulate rotation; a timer capped at
+            // maxFps applies it and repaints, so fast mice and remote sessions cannot flood the EDT.
+            // After release the cube keeps spinning with the drag velocity and slows down by friction.
             class MainCube3DPanel extends JPanel implements MouseListener, MouseMotionListener {
+                private static final double RADIANS_PER_PIXEL = 0.01;
+                // Fraction of the spin velocity kept per millisecond once the mouse is released
+                private static final double FRICTION_PER_MS = 0.996;
+                private static final double MIN_VELOCITY = 1e-5;
+                private static final int FRAME_SAMPLES = 120;
+                
                 private String[] cube;
                 private double angleX = 0, angleY = 0;
                 private int prevMouseX, prevMouseY;
-                private double[][] vertices = {
-                    {-1, -1, -1}, {1, -1, -1}, {1, 1, -1}, {-1, 1, -1},
-                    {-1, -1, 1}, {1, -1, 1}, {1, 1, 1}, {-1, 1, 1}
-                };
-                private int[][] edges = {
-                    {0,1},{1,2},{2,3},{3,0},
-                    {4,5},{5,6},{6,7},{7,4},
-                    {0,4},{1,5},{2,6},{3,7}
-                };
-                // Faces: front, back, left, right, top, bottom.
-                private int[][] faces = {
-                    {4,5,6,7}, // front (z=1)
-                    {0,1,2,3}, // back (z=-1)
-                    {0,3,7,4}, // left (x=-1)
-                    {1,2,6,5}, // right (x=1)
-                    {3,2,6,7}, // top (y=1)
-                    {0,1,5,4}  // bottom (y=-1)
-                };
+                private boolean dragging;
+                // Rotation received from the mouse since the last frame
+                private double pendingX, pendingY;
+                // Spin velocity in radians per millisecond
+                private double velocityX, velocityY;
+                private long lastTickNanos;
+                private final Timer frameTimer;
+                private int maxFps = 60;
+                // Projection buffers reused by every frame
+                private final int[] projectedX = new int[CUBE_VERTICES.length];
+                private final int[] projectedY = new int[CUBE_VERTICES.length];
+                private VolatileImage backBuffer;
+                // Frame statistics for the overlay: paint durations and start times of recent frames
+                private boolean showFrameStats;
+                private final long[] frameNanos = new long[FRAME_SAMPLES];
+                private final long[] frameStarts = new long[FRAME_SAMPLES];
+                private final long[] sortedFrameNanos = new long[FRAME_SAMPLES];
+                private int frameCount;
                 
                 public MainCube3DPanel() {
                     addMouseListener(this);
                     addMouseMotionListener(this);
+                    frameTimer = new Timer(1000 / maxFps, new ActionListener() {
+                        @Override
+                        public void actionPerformed(ActionEvent e) {
+                            tick();
+                        }
+                    });
+                    frameTimer.setCoalesce(true);
                 }
                 
                 public void setCube(String[] cube) {
@@ -524,176 +1240,266 @@ public class Main extends AbstractModule {
                     repaint();
                 }
                 
+                /**
+                 * Caps how often the cube is redrawn while it rotates.
+                 */
+                public void setMaxFps(int maxFps) {
+                    if (maxFps <= 0) {
+                        throw new IllegalArgumentException("maxFps must be positive: " + maxFps);
+                    }
+                    this.maxFps = maxFps;
+                    frameTimer.setDelay(Math.max(1, 1000 / maxFps));
+                }
+                
+                public int getMaxFps() {
+                    return maxFps;
+                }
+                
+                public void setShowFrameStats(boolean showFrameStats) {
+                    this.showFrameStats = showFrameStats;
+                    repaint();
+                }
+                
+                /**
+                 * Rotates the cube right away, without waiting for the next frame.
+                 */
+                public void rotateBy(double deltaX, double deltaY) {
+                    angleX += deltaX;
+                    angleY += deltaY;
+                }
+                
+                private void startFrames() {
+                    if (!frameTimer.isRunning()) {
+                        lastTickNanos = System.nanoTime();
+                        frameTimer.start();
+                    }
+                }
+                
+                /**
+                 * One frame: applies the accumulated drag or the remaining spin, then repaints once.
+                 */
+                private void tick() {
+                    long now = System.nanoTime();
+                    double elapsedMs = Math.max(1.0, (now - lastTickNanos) / 1e6);
+                    lastTickNanos = now;
+                    if (dragging) {
+                        // Smooth the velocity so the release speed reflects the last few frames
+                        velocityX = 0.5 * velocityX + 0.5 * pendingX / elapsedMs;
+                        velocityY = 0.5 * velocityY + 0.5 * pendingY / elapsedMs;
+                        if (pendingX == 0 && pendingY == 0) {
+                            // Mouse held still: nothing to redraw
+                            return;
+                        }
+                        rotateBy(pendingX, pendingY);
+                        pendingX = pendingY = 0;
+                    } else {
+                        rotateBy(velocityX * elapsedMs, velocityY * elapsedMs);
+                        double friction = Math.pow(FRICTION_PER_MS, elapsedMs);
+                        velocityX *= friction;
+                        velocityY *= friction;
+                        if (Math.abs(velocityX) < MIN_VELOCITY && Math.abs(velocityY) < MIN_VELOCITY) {
+                            velocityX = velocityY = 0;
+                            frameTimer.stop();
+                        }
+                    }
+                    repaint();
+                }
+                
                 @Override
                 protected void paintComponent(Graphics g) {
-                    super.paintComponent(g);
-                    Graphics2D g2 = (Graphics2D) g;
-                    g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                    long start = System.nanoTime();
+                    PaintEvent event = new PaintEvent();
+                    event.begin();
                     int width = getWidth();
                     int height = getHeight();
-                    int centerX = width / 2;
-                    int centerY = height / 2;
-                    Point[] projected = new Point[vertices.length];
-                    for (int i = 0; i < vertices.length; i++) {
-                        double[] v = vertices[i].clone();
-                        // Rotate around X
-                        double y = v[1] * Math.cos(angleX) - v[2] * Math.sin(angleX);
-                        double z = v[1] * Math.sin(angleX) + v[2] * Math.cos(angleX);
-                        v[1] = y; v[2] = z;
-                        // Rotate around Y
-                        double x = v[0] * Math.cos(angleY) + v[2] * Math.sin(angleY);
-                        z = -v[0] * Math.sin(angleY) + v[2] * Math.cos(angleY);
-                        v[0] = x; v[2] = z;
-                        double scale = 200;
-                        double perspective = 4 / (4 + v[2]);
-                        int projX = (int) (centerX + v[0] * scale * perspective);
-                        int projY = (int) (centerY + v[1] * scale * perspective);
-                        projected[i] = new Point(projX, projY);
+                    GraphicsConfiguration gc = getGraphicsConfiguration();
+                    if (gc == null || width <= 0 || height <= 0) {
+                        // Not on a screen (e.g. printed or painted headless): draw directly
+                        super.paintComponent(g);
+                        paintCube((Graphics2D) g, width, height);
+                    } else {
+                        // The buffer holds device pixels, like CachedCubePanel's image, so it stays sharp on HiDPI
+                        double scale = Math.max(1.0, ((Graphics2D) g).getTransform().getScaleX());
+                        int bufferWidth = (int) Math.ceil(width * scale);
+                        int bufferHeight = (int) Math.ceil(height * scale);
+                        do {
+                            if (backBuffer == null || backBuffer.getWidth() != bufferWidth
+                                    || backBuffer.getHeight() != bufferHeight
+                                    || backBuffer.validate(gc) == VolatileImage.IMAGE_INCOMPATIBLE) {
+                                if (backBuffer != null) {
+                                    backBuffer.flush();
+                                }
+                                backBuffer = createVolatileImage(bufferWidth, bufferHeight);
+                            }
+                            Graphics2D bg = backBuffer.createGraphics();
+                            try {
+                                bg.scale(scale, scale);
+                                bg.setColor(getBackground());
+                                bg.fillRect(0, 0, width, height);
+                                paintCube(bg, width, height);
+                            } finally {
+                                bg.dispose();
+                            }
+                            g.drawImage(backBuffer, 0, 0, width, height, null);
+                        } while (backBuffer.contentsLost());
                     }
-                    g2.setStroke(new BasicStroke(2));
-                    g2.setColor(Color.BLUE);
-                    for (int[] edge : edges) {
-                        Point p1 = projected[edge[0]];
-                        Point p2 = projected[edge[1]];
-                        g2.drawLine(p1.x, p1.y, p2.x, p2.y);
+                    recordFrame(start, System.nanoTime() - start);
+                    if (showFrameStats) {
+                        drawFrameStats((Graphics2D) g);
                     }
-                    if (cube != null) {
-                        // Mapping: front→cube[2], back→cube[5], left→cube[0],
-                        // right→cube[3], top→cube[1], bottom→cube[4]
-                        int[] faceToCubeIndex = {2, 5, 0, 3, 1, 4};
-                        g2.setFont(new Font("SansSerif", Font.BOLD, 32));
-                        g2.setColor(Color.RED);
-                        for (int f = 0; f < faces.length; f++) {
-                            int[] face = faces[f];
-                            int sumX = 0, sumY = 0;
-                            for (int idx : face) {
-                                sumX += projected[idx].x;
-                                sumY += projected[idx].y;
-                            }
-                            int centerFaceX = sumX / face.length;
-                            int centerFaceY = sumY / face.length;
-                            String letter = cube[faceToCubeIndex[f]];
-                            FontMetrics fm = g2.getFontMetrics();
-                            int textWidth = fm.stringWidth(letter);
-                            int textHeight = fm.getAscent();
-                            g2.drawString(letter, centerFaceX - textWidth / 2, centerFaceY + textHeight / 2);
+                    event.finish(this, width, height, 0);
+                }
+                
+                private void paintCube(Graphics2D g2, int width, int height) {
+                    g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                    projectCube(angleX, angleY, 200, width / 2, height / 2, projectedX, projectedY);
+                    drawCube(g2, projectedX, projectedY, cube, MAIN_CUBE_FONT);
+                }
+                
+                private void recordFrame(long startNanos, long durationNanos) {
+                    int slot = frameCount++ % FRAME_SAMPLES;
+                    frameStarts[slot] = startNanos;
+                    frameNanos[slot] = durationNanos;
+                }
+                
+                /**
+                 * Draws the frame rate over the last second and paint-time percentiles over recent frames.
+                 */
+                private void drawFrameStats(Graphics2D g2) {
+                    int samples = Math.min(frameCount, FRAME_SAMPLES);
+                    long now = System.nanoTime();
+                    int framesLastSecond = 0;
+                    for (int i = 0; i < samples; i++) {
+                        if (now - frameStarts[i] <= 1_000_000_000L) {
+                            framesLastSecond++;
                         }
                     }
+                    System.arraycopy(frameNanos, 0, sortedFrameNanos, 0, samples);
+                    Arrays.sort(sortedFrameNanos, 0, samples);
+                    String stats = String.format("%d fps (cap %d)  p50 %.2f ms  p95 %.2f ms  p99 %.2f ms",
+                            framesLastSecond, maxFps, percentileMs(samples, 0.50), percentileMs(samples, 0.95),
+                            percentileMs(samples, 0.99));
+                    g2.setFont(getFont());
+                    g2.setColor(Color.DARK_GRAY);
+                    g2.drawString(stats, 8, 8 + g2.getFontMetrics().getAscent());
+                }
+                
+                private double percentileMs(int samples, double percentile) {
+                    if (samples == 0) {
+                        return 0;
+                    }
+                    int index = Math.min(samples - 1, (int) Math.ceil(percentile * samples) - 1);
+                    return sortedFrameNanos[Math.max(0, index)] / 1e6;
+                }
+                
+                @Override
+                public void removeNotify() {
+                    frameTimer.stop();
+                    if (backBuffer != null) {
+                        backBuffer.flush();
+                        backBuffer = null;
+                    }
+                    super.removeNotify();
                 }
                 
                 @Override
                 public void mousePressed(MouseEvent e) {
                     prevMouseX = e.getX();
                     prevMouseY = e.getY();
+                    dragging = true;
+                    velocityX = velocityY = 0;
+                    pendingX = pendingY = 0;
+                    frameTimer.stop();
                 }
                 
                 @Override
                 public void mouseDragged(MouseEvent e) {
                     int dx = e.getX() - prevMouseX;
                     int dy = e.getY() - prevMouseY;
-                    angleY += dx * 0.01;
-                    angleX += dy * 0.01;
+                    pendingY += dx * RADIANS_PER_PIXEL;
+                    pendingX += dy * RADIANS_PER_PIXEL;
                     prevMouseX = e.getX();
                     prevMouseY = e.getY();
+                    startFrames();
+                }
+                
+                @Override
+                public void mouseReleased(MouseEvent e) {
+                    dragging = false;
+                    // Apply what arrived since the last frame; the timer carries on with the spin
+                    rotateBy(pendingX, pendingY);
+                    pendingX = pendingY = 0;
+                    if (velocityX != 0 || velocityY != 0) {
+                        startFrames();
+                    }
                     repaint();
                 }
                 
                 @Override public void mouseClicked(MouseEvent e) {}
-                @Override public void mouseReleased(MouseEvent e) {}
                 @Override public void mouseEntered(MouseEvent e) {}
                 @Override public void mouseExited(MouseEvent e) {}
                 @Override public void mouseMoved(MouseEvent e) {}
             }
             
             // ---------------------------
-            // Non-interactive preview panel for 3D cube.
-            class Cube3DPreviewPanel extends JPanel {
-                private String[] cube;
+            // Non-interactive preview panel for 3D cube. Its angle is fixed, so it is rendered once per cube.
+            class Cube3DPreviewPanel extends CachedCubePanel {
                 private double angleX = 0.3, angleY = 0.3;
-                private double[][] vertices = {
-                    {-1, -1, -1}, {1, -1, -1}, {1, 1, -1}, {-1, 1, -1},
-                    {-1, -1, 1}, {1, -1, 1}, {1, 1, 1}, {-1, 1, 1}
-                };
-                private int[][] edges = {
-                    {0,1},{1,2},{2,3},{3,0},
-                    {4,5},{5,6},{6,7},{7,4},
-                    {0,4},{1,5},{2,6},{3,7}
-                };
-                private int[][] faces = {
-                    {4,5,6,7}, // front
-                    {0,1,2,3}, // back
-                    {0,3,7,4}, // left
-                    {1,2,6,5}, // right
-                    {3,2,6,7}, // top
-                    {0,1,5,4}  // bottom
-                };
-                
-                public void setCube(String[] cube) {
-                    this.cube = cube;
-                    repaint();
-                }
                 
                 @Override
-                protected void paintComponent(Graphics g) {
-                    super.paintComponent(g);
-                    Graphics2D g2 = (Graphics2D) g;
+                protected void render(Graphics2D g2, int width, int height) {
                     g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                    int width = getWidth();
-                    int height = getHeight();
-                    int centerX = width / 2;
-                    int centerY = height / 2;
-                    Point[] projected = new Point[vertices.length];
-                    for (int i = 0; i < vertices.length; i++) {
-                        double[] v = vertices[i].clone();
-                        double y = v[1] * Math.cos(angleX) - v[2] * Math.sin(angleX);
-                        double z = v[1] * Math.sin(angleX) + v[2] * Math.cos(angleX);
-                        v[1] = y; v[2] = z;
-                        double x = v[0] * Math.cos(angleY) + v[2] * Math.sin(angleY);
-                        z = -v[0] * Math.sin(angleY) + v[2] * Math.cos(angleY);
-                        v[0] = x; v[2] = z;
-                        double scale = 100;
-                        double perspective = 4 / (4 + v[2]);
-                        int projX = (int) (centerX + v[0] * scale * perspective);
-                        int projY = (int) (centerY + v[1] * scale * perspective);
-                        projected[i] = new Point(projX, projY);
-                    }
-                    g2.setStroke(new BasicStroke(2));
-                    g2.setColor(Color.BLUE);
-                    for (int[] edge : edges) {
-                        Point p1 = projected[edge[0]];
-                        Point p2 = projected[edge[1]];
-                        g2.drawLine(p1.x, p1.y, p2.x, p2.y);
-                    }
-                    g2.setFont(new Font("SansSerif", Font.BOLD, 24));
-                    g2.setColor(Color.RED);
-                    if (cube != null) {
-                        int[] faceToCubeIndex = {2, 5, 0, 3, 1, 4};
-                        for (int f = 0; f < faces.length; f++) {
-                            int[] face = faces[f];
-                            int sumX = 0, sumY = 0;
-                            for (int idx : face) {
-                                sumX += projected[idx].x;
-                                sumY += projected[idx].y;
-                            }
-                            int centerFaceX = sumX / face.length;
-                            int centerFaceY = sumY / face.length;
-                            String letter = cube[faceToCubeIndex[f]];
-                            FontMetrics fm = g2.getFontMetrics();
-                            int textWidth = fm.stringWidth(letter);
-                            int textHeight = fm.getAscent();
-                            g2.drawString(letter, centerFaceX - textWidth / 2, centerFaceY + textHeight / 2);
-                        }
-                    }
+                    int[] xs = new int[CUBE_VERTICES.length];
+                    int[] ys = new int[CUBE_VERTICES.length];
+                    projectCube(angleX, angleY, 100, width / 2, height / 2, xs, ys);
+                    drawCube(g2, xs, ys, cube, PREVIEW_FONT);
                 }
             }
         }
     }
     
+    // ------------------------------
+    // Headless Renderers
+    // ------------------------------
+    
+    /**
+     * The Cube Navigator renderers built without a frame, all showing one cube: the main 3D cube, a 3D preview
+     * and the open net. Only RenderBenchmark uses it, reaching this package-private type reflectively.
+     */
+    static final class CubeRenderers {
+        final JComponent mainCube;
+        final JComponent preview;
+        final JComponent openNet;
+        
+        CubeRenderers(String[] cube) {
+            CubeNavigatorPanel navigator = new CubeNavigatorPanel();
+            CubeNavigatorPanel.Cube3DNavigatorPanel navigator3D = navigator.cube3DNavigatorPanel;
+            navigator3D.setMainCube(cube);
+            navigator3D.setPreviewCubes(cube, cube);
+            navigator.openCubePanel.setCube(cube);
+            mainCube = navigator3D.mainCube;
+            preview = navigator3D.leftPreview;
+            openNet = navigator.openCubePanel;
+        }
+        
+        /**
+         * Rotates the main cube right away, as a mouse drag would by the next frame.
+         */
+        void rotateMainCube(double deltaX, double deltaY) {
+            ((CubeNavigatorPanel.Cube3DNavigatorPanel.MainCube3DPanel) mainCube).rotateBy(deltaX, deltaY);
+        }
+    }
+    
     // ------------------------------
     // Main Method
     // ------------------------------
     
     public static void main(String[] args) {
+        // Any arguments select the headless command-line mode, which never builds the frame
+        if (args.length > 0) {
+            CubeCli.main(args);
+            return;
+        }
         Main module = new Main();
         module.start();
     }